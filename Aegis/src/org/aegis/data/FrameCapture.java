@@ -0,0 +1,372 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.data;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Records rendered frames to disk without holding up the thread which
+ * rendered them. Each captured frame is copied into one of a fixed pool of
+ * buffers and queued for a set of background workers, which write it out as
+ * a numbered PNG or raw ARGB file. When every buffer is in use, because the
+ * workers can't keep up, new frames are dropped and counted instead of
+ * waiting.
+ * <p>
+ * Raw files start with the frame's width and height as big-endian ints,
+ * followed by one big-endian non-premultiplied ARGB int per pixel, row by row
+ * from the top left.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class FrameCapture {
+
+    // DEFAULT NUMBER OF FRAMES WHICH CAN WAIT TO BE WRITTEN
+    public static final int DEFAULT_QUEUE_SIZE = 8;
+
+    /**
+     * The file format frames are written in
+     */
+    public static enum Format {
+
+        // COMPRESSED, SLOW TO WRITE
+        PNG(".png"),
+        // UNCOMPRESSED, FAST TO WRITE
+        RAW(".argb");
+
+        private final String extension;
+
+        private Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    // WHERE AND HOW FRAMES ARE WRITTEN
+    private final File directory;
+    private final String prefix;
+    private final Format format;
+
+    // BUFFERS NOT IN USE, AND FRAMES WAITING TO BE WRITTEN
+    private final BlockingQueue<Buffer> free;
+    private final BlockingQueue<Buffer> queue;
+
+    // THE WORKER THREADS
+    private final Thread[] workers;
+    private volatile boolean running;
+
+    // STATISTICS
+    private final AtomicLong written;
+    private final AtomicLong failed;
+    private volatile long captured;
+    private volatile long dropped;
+    private volatile long lastCopyNanos;
+    private volatile IOException lastError;
+
+    /**
+     * Constructor for a capture with the default queue size and a single
+     * worker
+     *
+     * @param directory the directory to write frames into
+     * @param format the format to write frames in
+     */
+    public FrameCapture(File directory, Format format) {
+        this(directory, "frame", format, DEFAULT_QUEUE_SIZE, 1);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory to write frames into
+     * @param prefix the start of every file name, followed by the frame number
+     * @param format the format to write frames in
+     * @param queueSize the number of frames which can wait to be written
+     * before new ones are dropped
+     * @param workerCount the number of threads writing frames
+     */
+    public FrameCapture(File directory, String prefix, Format format, int queueSize, int workerCount) {
+        if (directory == null || format == null) {
+            throw new IllegalArgumentException("A directory and a format are required");
+        }
+        if (queueSize <= 0 || workerCount <= 0) {
+            throw new IllegalArgumentException("Queue size and worker count must be positive and non-zero");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.format = format;
+
+        // ONE BUFFER FOR EVERY QUEUED FRAME AND EVERY FRAME BEING WRITTEN
+        this.free = new ArrayBlockingQueue(queueSize + workerCount);
+        this.queue = new ArrayBlockingQueue(queueSize);
+        for (int i = 0; i < queueSize + workerCount; i++) {
+            free.add(new Buffer());
+        }
+        this.workers = new Thread[workerCount];
+        this.written = new AtomicLong();
+        this.failed = new AtomicLong();
+    }
+
+    /**
+     * Starts the worker threads, creating the directory if needed
+     *
+     * @throws IOException if the directory can't be created
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        running = true;
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Worker(), "AEGIS Capture " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Stops capturing, waiting for every frame already queued to be written.
+     * A frame being captured at the same moment may be left unwritten.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * @return True if frames are being captured
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Copies a frame and queues it to be written. This never blocks on the
+     * workers: if no buffer is free the frame is dropped. Frames must only be
+     * captured from one thread at a time.
+     *
+     * @param frame the rendered frame
+     * @return true if the frame was queued, false if it was dropped or
+     * capturing isn't running
+     */
+    public boolean capture(BufferedImage frame) {
+        if (!running) {
+            return false;
+        }
+        Buffer buffer = free.poll();
+        if (buffer == null) {
+            dropped++;
+            return false;
+        }
+
+        long start = System.nanoTime();
+        buffer.copy(frame);
+        buffer.number = captured;
+        lastCopyNanos = System.nanoTime() - start;
+
+        // A WORKER MAY HAVE FREED A BUFFER WITHOUT TAKING THE NEXT FRAME YET
+        if (!queue.offer(buffer)) {
+            free.offer(buffer);
+            dropped++;
+            return false;
+        }
+        captured++;
+        return true;
+    }
+
+    /**
+     * Returns the file a frame is written to
+     *
+     * @param number the frame number
+     * @return the file
+     */
+    public File getFile(long number) {
+        return new File(directory, String.format("%s-%06d%s", prefix, number, format.extension));
+    }
+
+    /**
+     * @return The number of frames queued to be written
+     */
+    public long getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return The number of frames written to disk
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return The number of frames dropped because the workers couldn't keep
+     * up
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return The number of frames which couldn't be written
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return The last error hit while writing a frame, or null if there
+     * hasn't been one
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return The time in nanoseconds the last captured frame took to copy,
+     * which is all capturing costs the rendering thread
+     */
+    public long getLastCopyTime() {
+        return lastCopyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameCapture[" + format + " captured=" + captured + " written=" + written.get()
+                + " dropped=" + dropped + " failed=" + failed.get() + ']';
+    }
+
+    /**
+     * Writes a frame to disk
+     *
+     * @param buffer the buffer holding the frame
+     * @throws IOException if the frame can't be written
+     */
+    private void write(Buffer buffer) throws IOException {
+        File file = getFile(buffer.number);
+        if (format == Format.PNG) {
+            if (!ImageIO.write(buffer.image, "png", file)) {
+                throw new IOException("No PNG writer available");
+            }
+            return;
+        }
+
+        int width = buffer.image.getWidth();
+        int height = buffer.image.getHeight();
+        int[] pixels = ((DataBufferInt) buffer.image.getRaster().getDataBuffer()).getData();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(width);
+            out.writeInt(height);
+            for (int i = 0; i < width * height; i++) {
+                out.writeInt(pixels[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * A reusable copy of a frame, along with its frame number
+     */
+    private static class Buffer {
+
+        private BufferedImage image;
+        private long number;
+
+        /**
+         * Copies a frame into the buffer, replacing its image if the size
+         * changed
+         *
+         * @param frame the frame to copy
+         */
+        private void copy(BufferedImage frame) {
+            int width = frame.getWidth();
+            int height = frame.getHeight();
+            if (image == null || image.getWidth() != width || image.getHeight() != height) {
+                image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setComposite(AlphaComposite.Src);
+                g.drawImage(frame, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+        }
+    }
+
+    /**
+     * Takes queued frames and writes them until capturing stops and the
+     * queue is empty
+     */
+    private class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                Buffer buffer;
+                try {
+                    buffer = queue.poll(50, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                if (buffer == null) {
+                    if (!running) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    write(buffer);
+                    written.incrementAndGet();
+                } catch (IOException ex) {
+                    lastError = ex;
+                    failed.incrementAndGet();
+                } finally {
+                    free.offer(buffer);
+                }
+            }
+        }
+    }
+}
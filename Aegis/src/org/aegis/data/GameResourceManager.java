@@ -23,6 +23,9 @@
  */
 package org.aegis.data;
 
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import org.aegis.ui.RenderItem;
 
 /**
@@ -35,11 +38,55 @@ public class GameResourceManager {
     // MAP OF ALL THE RENDER ITEMS
     private DirectAccessMap<RenderItem> renderItems;
 
+    // CONVERTS LOADED IMAGES INTO THE SCREEN'S FORMAT
+    private ImageIngestor ingestor;
+
     /**
      * Constructor
      */
     public GameResourceManager() {
         renderItems = new DirectAccessMap();
+        ingestor = ImageIngestor.SHARED;
+    }
+
+    /**
+     * Method to load an image from a file, converted into the screen's format
+     * so that drawing it is as fast as possible
+     *
+     * @param file the file to read
+     * @return the converted image
+     * @throws IOException if the file can't be read or isn't a supported image
+     */
+    public BufferedImage loadImage(File file) throws IOException {
+        return ingestor.read(file);
+    }
+
+    /**
+     * Method to convert an already loaded image into the screen's format
+     *
+     * @param image the image to convert
+     * @return the converted image, or the same image if no conversion was
+     * needed
+     */
+    public BufferedImage loadImage(BufferedImage image) {
+        return ingestor.ingest(image);
+    }
+
+    /**
+     * Sets the object used to convert loaded images
+     *
+     * @param ingestor the new image ingestor
+     */
+    public void setIngestor(ImageIngestor ingestor) {
+        this.ingestor = ingestor;
+    }
+
+    /**
+     * @return The object used to convert loaded images, along with its
+     * statistics
+     */
+    public ImageIngestor getIngestor() {
+        return ingestor;
     }
 
     /**
@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.data;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/**
+ * Converts loaded images into the format the screen uses, so that drawing them
+ * never requires converting pixels on the fly. Each image's transparency is
+ * classified as Transparency.OPAQUE, BITMASK or TRANSLUCENT first, which lets
+ * opaque and bitmask images use cheaper formats. When running headless every
+ * image is converted to TYPE_INT_ARGB_PRE instead.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class ImageIngestor {
+
+    // INSTANCE SHARED BY EVERYTHING WHICH LOADS IMAGES WITHOUT A RESOURCE MANAGER
+    public static final ImageIngestor SHARED = new ImageIngestor();
+
+    // THE COLORMODEL OF TYPE_INT_ARGB_PRE, USED WHEN RUNNING HEADLESS
+    private static final ColorModel HEADLESS_MODEL = new DirectColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_sRGB), 32,
+            0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000, true, DataBuffer.TYPE_INT);
+
+    // STATISTICS
+    private final AtomicLong converted;
+    private final AtomicLong compatible;
+    private final AtomicLong conversionNanos;
+    private final AtomicLong[] classified;
+
+    /**
+     * Constructor
+     */
+    public ImageIngestor() {
+        this.converted = new AtomicLong();
+        this.compatible = new AtomicLong();
+        this.conversionNanos = new AtomicLong();
+        this.classified = new AtomicLong[]{new AtomicLong(), new AtomicLong(), new AtomicLong()};
+    }
+
+    /**
+     * Reads an image from a file and converts it
+     *
+     * @param file the file to read
+     * @return the converted image
+     * @throws IOException if the file can't be read or isn't a supported image
+     */
+    public BufferedImage read(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+        return ingest(image);
+    }
+
+    /**
+     * Converts an image into the screen's format, unless it's already in it
+     *
+     * @param image the image to convert
+     * @return the converted image, or the same image if no conversion was
+     * needed
+     */
+    public BufferedImage ingest(BufferedImage image) {
+        long start = System.nanoTime();
+        int transparency = classify(image);
+        classified[transparency - 1].incrementAndGet();
+
+        ColorModel model = getCompatibleModel(transparency);
+        if (model.equals(image.getColorModel()) && model.isCompatibleRaster(image.getRaster())) {
+            compatible.incrementAndGet();
+            conversionNanos.addAndGet(System.nanoTime() - start);
+            return image;
+        }
+
+        BufferedImage result = createCompatible(image.getWidth(), image.getHeight(), transparency);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        converted.incrementAndGet();
+        conversionNanos.addAndGet(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Works out how much transparency an image actually uses, regardless of
+     * its format
+     *
+     * @param image the image to check
+     * @return Transparency.OPAQUE if every pixel is fully opaque,
+     * Transparency.BITMASK if every pixel is either fully opaque or fully
+     * transparent, or Transparency.TRANSLUCENT otherwise
+     */
+    public static int classify(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return Transparency.OPAQUE;
+        }
+        int width = image.getWidth();
+        int[] row = new int[width];
+        boolean transparent = false;
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int alpha = row[x] >>> 24;
+                if (alpha == 0) {
+                    transparent = true;
+                } else if (alpha != 255) {
+                    return Transparency.TRANSLUCENT;
+                }
+            }
+        }
+        return transparent ? Transparency.BITMASK : Transparency.OPAQUE;
+    }
+
+    /**
+     * Creates a blank image in the screen's format, or TYPE_INT_ARGB_PRE when
+     * running headless
+     *
+     * @param width the width of the image
+     * @param height the height of the image
+     * @param transparency the Transparency the image needs to support
+     * @return a new image
+     */
+    public static BufferedImage createCompatible(int width, int height, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return gc.createCompatibleImage(width, height, transparency);
+    }
+
+    /**
+     * Returns the ColorModel of the images createCompatible would make, without
+     * allocating one
+     *
+     * @param transparency the Transparency the image needs to support
+     * @return the screen's ColorModel, or that of TYPE_INT_ARGB_PRE when
+     * running headless
+     */
+    public static ColorModel getCompatibleModel(int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return HEADLESS_MODEL;
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return gc.getColorModel(transparency);
+    }
+
+    /**
+     * @return The number of images which had to be converted
+     */
+    public long getConverted() {
+        return converted.get();
+    }
+
+    /**
+     * @return The number of images which were already in the right format
+     */
+    public long getAlreadyCompatible() {
+        return compatible.get();
+    }
+
+    /**
+     * Returns the number of images classified with a given transparency
+     *
+     * @param transparency Transparency.OPAQUE, BITMASK or TRANSLUCENT
+     * @return the number of images with that transparency
+     */
+    public long getCount(int transparency) {
+        return classified[transparency - 1].get();
+    }
+
+    /**
+     * @return The total time spent classifying and converting images, in
+     * nanoseconds
+     */
+    public long getConversionTime() {
+        return conversionNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[ImageIngestor %d converted\t%d compatible\t%d opaque\t%d bitmask\t%d translucent\t%.3fms]",
+                converted.get(), compatible.get(), getCount(Transparency.OPAQUE), getCount(Transparency.BITMASK), getCount(Transparency.TRANSLUCENT), conversionNanos.get() / 1000000.0);
+    }
+}
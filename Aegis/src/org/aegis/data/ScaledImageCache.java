@@ -0,0 +1,353 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.data;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of pre-scaled copies of images, so that an image drawn at the
+ * same size frame after frame is only rescaled once. Entries are keyed by the
+ * source's identity along with the size and quality they were scaled to, and
+ * the least recently used ones are evicted once the scaled copies take up
+ * more memory than the budget allows.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class ScaledImageCache {
+
+    // DEFAULT MEMORY BUDGET IN BYTES
+    public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+    // CACHE SHARED BY EVERY DYNAMICDECAL UNLESS TOLD OTHERWISE
+    public static final ScaledImageCache SHARED = new ScaledImageCache();
+
+    /**
+     * How much effort goes into scaling an image
+     */
+    public static enum Quality {
+
+        // NEAREST NEIGHBOUR, THE SAME AS DRAWING WITH A SIZE BY DEFAULT
+        FAST(RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR),
+        // BILINEAR FILTERING
+        BALANCED(RenderingHints.VALUE_INTERPOLATION_BILINEAR),
+        // BICUBIC FILTERING, HALVING REPEATEDLY WHEN SHRINKING BY MORE THAN HALF
+        SMOOTH(RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+
+        private final Object interpolation;
+
+        private Quality(Object interpolation) {
+            this.interpolation = interpolation;
+        }
+    }
+
+    // SCALED IMAGES IN ORDER OF LEAST TO MOST RECENTLY USED
+    private final LinkedHashMap<Key, BufferedImage> entries;
+
+    // KEY REUSED FOR LOOKUPS SO THAT HITS DON'T ALLOCATE
+    private final Key probe;
+
+    // MEMORY BUDGET AND USAGE
+    private long budget;
+    private long bytes;
+
+    // STATISTICS
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructor for a cache with the default budget
+     */
+    public ScaledImageCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param budget the maximum number of bytes the scaled images can take up
+     */
+    public ScaledImageCache(long budget) {
+        this.entries = new LinkedHashMap(16, 0.75f, true);
+        this.probe = new Key();
+        setBudget(budget);
+    }
+
+    /**
+     * Returns an image scaled to a given size, scaling and caching it if it
+     * isn't cached already
+     *
+     * @param image the image to scale
+     * @param width the width to scale to
+     * @param height the height to scale to
+     * @param quality how much effort to put into scaling
+     * @return the scaled image, or null if the size is invalid or the scaled
+     * image wouldn't fit in the budget
+     */
+    public synchronized BufferedImage get(BufferedImage image, int width, int height, Quality quality) {
+        BufferedImage scaled = lookup(image, width, height, quality);
+        if (scaled == null) {
+            scaled = scale(image, image, width, height, quality);
+        }
+        return scaled;
+    }
+
+    /**
+     * Looks up a cached scaled image, counting a hit or a miss. This allows a
+     * source other than the image itself, such as a region of an atlas, to be
+     * used as the key without creating its image on every lookup.
+     *
+     * @param source the object the image was scaled from
+     * @param width the width it was scaled to
+     * @param height the height it was scaled to
+     * @param quality the quality it was scaled with
+     * @return the cached scaled image, or null if there is none
+     */
+    public synchronized BufferedImage lookup(Object source, int width, int height, Quality quality) {
+        probe.set(source, width, height, quality);
+        BufferedImage scaled = entries.get(probe);
+        probe.source = null;
+        if (scaled != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return scaled;
+    }
+
+    /**
+     * Scales an image and caches the result under a given source
+     *
+     * @param source the object to cache the scaled image under
+     * @param image the image to scale
+     * @param width the width to scale to
+     * @param height the height to scale to
+     * @param quality how much effort to put into scaling
+     * @return the scaled image, or null if the size is invalid or the scaled
+     * image wouldn't fit in the budget
+     */
+    public synchronized BufferedImage scale(Object source, BufferedImage image, int width, int height, Quality quality) {
+        long size = 4L * width * height;
+        if (width <= 0 || height <= 0 || size > budget) {
+            return null;
+        }
+
+        BufferedImage scaled = createScaled(image, width, height, quality);
+        Key key = new Key();
+        key.set(source, width, height, quality);
+        BufferedImage old = entries.put(key, scaled);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        bytes += size;
+        trim();
+        return scaled;
+    }
+
+    /**
+     * Removes every scaled copy of a source, such as after its pixels change
+     *
+     * @param source the object the images were scaled from
+     */
+    public synchronized void invalidate(Object source) {
+        Iterator<Map.Entry<Key, BufferedImage>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, BufferedImage> entry = it.next();
+            if (entry.getKey().source == source) {
+                bytes -= sizeOf(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes every cached image
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Sets the memory budget, evicting images right away if needed
+     *
+     * @param budget the maximum number of bytes the scaled images can take up
+     */
+    public final synchronized void setBudget(long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("The budget can't be negative");
+        }
+        this.budget = budget;
+        trim();
+    }
+
+    /**
+     * @return The maximum number of bytes the scaled images can take up
+     */
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The number of bytes the scaled images currently take up
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The number of scaled images cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of lookups which found a cached image
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups which didn't find a cached image
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The number of images evicted to stay within the budget
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        return String.format("[ScaledImageCache %d images\t%.1f/%.1fMB\t%d hits\t%d misses\t%.1f%% hit rate\t%d evicted]",
+                entries.size(), bytes / 1048576.0, budget / 1048576.0, hits, misses, total == 0 ? 0 : hits * 100.0 / total, evictions);
+    }
+
+    /**
+     * Evicts the least recently used images until the cache fits its budget
+     */
+    private void trim() {
+        Iterator<BufferedImage> it = entries.values().iterator();
+        while (bytes > budget && it.hasNext()) {
+            bytes -= sizeOf(it.next());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * @param image a scaled image
+     * @return the number of bytes it's counted as
+     */
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Creates a scaled copy of an image in the screen's format
+     *
+     * @param image the image to scale
+     * @param width the width to scale to
+     * @param height the height to scale to
+     * @param quality how much effort to put into scaling
+     * @return the scaled image
+     */
+    private static BufferedImage createScaled(BufferedImage image, int width, int height, Quality quality) {
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        do {
+            // SHRINKING BY MORE THAN HALF AT ONCE SKIPS PIXELS, SO HALVE REPEATEDLY INSTEAD
+            if (quality == Quality.SMOOTH) {
+                w = w / 2 > width ? w / 2 : width;
+                h = h / 2 > height ? h / 2 : height;
+            } else {
+                w = width;
+                h = height;
+            }
+
+            BufferedImage next = ImageIngestor.createCompatible(w, h, image.getTransparency());
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setComposite(AlphaComposite.Src);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, quality.interpolation);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+
+        return current;
+    }
+
+    /**
+     * Key made up of a source's identity, a size and a quality
+     */
+    private static class Key {
+
+        private Object source;
+        private int width;
+        private int height;
+        private Quality quality;
+
+        private void set(Object source, int width, int height, Quality quality) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+            this.quality = quality;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return source == k.source && width == k.width && height == k.height && quality == k.quality;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = System.identityHashCode(source);
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            return 31 * hash + quality.ordinal();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer which hands complete objects from a single producer
+ * thread to a single consumer thread. The producer always has a back buffer to
+ * write into and the consumer always has a front buffer to read from, so
+ * neither ever waits on the other. Publishing faster than the consumer can
+ * keep up simply replaces the buffer waiting in the middle.
+ *
+ * @param <E> the type of object being buffered
+ * @author Rogue <Alice Q.>
+ */
+public class TripleBuffer<E> {
+
+    // FLAG SET IN THE STATE WHEN THE MIDDLE BUFFER HASN'T BEEN CONSUMED YET
+    private final static int FRESH = 4;
+    private final static int INDEX = 3;
+
+    // THE THREE BUFFERS
+    private final Object[] buffers;
+
+    // INDEX OF THE MIDDLE BUFFER AND WHETHER OR NOT IT'S FRESH
+    private final AtomicInteger state;
+
+    // INDICES OWNED BY EACH SIDE
+    private int back;
+    private int front;
+
+    // STATISTICS
+    private volatile long published;
+    private volatile long consumed;
+
+    /**
+     * Constructor which takes the three objects to cycle between. These should
+     * all be separate instances.
+     *
+     * @param first the initial back buffer
+     * @param second the initial middle buffer
+     * @param third the initial front buffer
+     */
+    public TripleBuffer(E first, E second, E third) {
+        buffers = new Object[]{first, second, third};
+        back = 0;
+        state = new AtomicInteger(1);
+        front = 2;
+    }
+
+    /**
+     * Returns the buffer the producer should write into. This must only be
+     * called from the producer thread.
+     *
+     * @return the current back buffer
+     */
+    public E getBack() {
+        return (E) buffers[back];
+    }
+
+    /**
+     * Makes the back buffer available to the consumer and gives the producer a
+     * new one. This must only be called from the producer thread.
+     *
+     * @return the new back buffer, which may hold an older unconsumed frame
+     */
+    public E publish() {
+        back = state.getAndSet(back | FRESH) & INDEX;
+        published++;
+        return (E) buffers[back];
+    }
+
+    /**
+     * Takes the most recently published buffer as the new front buffer, if
+     * there is one. This must only be called from the consumer thread.
+     *
+     * @return true if a new buffer was taken, false if nothing new has been
+     * published since the last call
+     */
+    public boolean consume() {
+        if ((state.get() & FRESH) == 0) {
+            return false;
+        }
+        front = state.getAndSet(front) & INDEX;
+        consumed++;
+        return true;
+    }
+
+    /**
+     * Returns the buffer the consumer should read from. This must only be
+     * called from the consumer thread.
+     *
+     * @return the current front buffer
+     */
+    public E getFront() {
+        return (E) buffers[front];
+    }
+
+    /**
+     * @return True if a buffer has been published but not yet consumed
+     */
+    public boolean hasFresh() {
+        return (state.get() & FRESH) != 0;
+    }
+
+    /**
+     * @return The number of buffers published which were replaced before the
+     * consumer could take them
+     */
+    public long getDropped() {
+        return Math.max(0, published - consumed - (hasFresh() ? 1 : 0));
+    }
+
+    /**
+     * @return The total number of buffers published
+     */
+    public long getPublished() {
+        return published;
+    }
+}
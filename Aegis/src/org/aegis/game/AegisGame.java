@@ -23,10 +23,8 @@
  */
 package org.aegis.game;
 
-import java.awt.Canvas;
-import javax.swing.JFrame;
 import org.aegis.data.GameResourceManager;
-import org.aegis2d.Aegis2DGraphics;
+import org.aegis.ui.GameGraphics;
 import org.aegis.ui.GameInputMonitor;
 
 /**
@@ -34,7 +32,7 @@ import org.aegis.ui.GameInputMonitor;
  *
  * @author Rogue <Alice Q>
  */
-public class AegisGame implements java.lang.Runnable {
+public class AegisGame implements FixedStepRunnable {
 
     // GLOBAL STATIC INSTANCE. THIS IS SIMPLY FOR THE USER TO USE IF DESIRED AND HAS NO EFFECT ON THE OVERALL GAME, BUT CAN BE USED FOR EASY GLOBAL ACCESS
     public static AegisGame GLOBAL;
@@ -46,7 +44,7 @@ public class AegisGame implements java.lang.Runnable {
     protected TimeKeeper timer;
 
     // GAMEGRAPHICS OBJECT
-    protected Aegis2DGraphics graphics;
+    protected GameGraphics graphics;
 
     // GAMESCENEMANAGER OBJECT
     protected GameSceneManager scenemanager;
@@ -57,6 +55,27 @@ public class AegisGame implements java.lang.Runnable {
     // RESOURCE MANAGER
     protected GameResourceManager resources;
 
+    // PER-PHASE FRAME PROFILER
+    // - ALONG WITH THE TIMER FRAME BEING PROFILED AND WHETHER IT HAS ANYTHING NOT YET COMMITTED
+    protected FrameProfiler profiler;
+    private long profiledFrame;
+    private boolean uncommitted;
+
+    // SCHEDULER FOR SYSTEMS RUNNING AT THEIR OWN RATES
+    protected SystemScheduler scheduler;
+
+    // JOB SYSTEM FOR SYSTEMS UPDATED IN PARALLEL EVERY STEP
+    protected JobSystem jobs;
+
+    // SHARED EXECUTOR FOR BACKGROUND WORK
+    protected GameExecutor executor;
+
+    // EVERY RUNTIME SYSTEM IN THE ORDER THEY RUN
+    protected SystemRegistry systems;
+
+    // CLOCK ADVANCING THE CURRENT SCENE'S ANIMATIONS
+    protected AnimationClock animations;
+
     /**
      * Constructor which initializes the game using the default framerate
      *
@@ -64,7 +83,14 @@ public class AegisGame implements java.lang.Runnable {
      */
     public AegisGame(String name) {
         this.timer = new TimeKeeper(this);
+        this.profiler = new FrameProfiler();
+        this.scheduler = new SystemScheduler();
+        this.jobs = new JobSystem();
+        this.executor = new GameExecutor();
+        this.systems = new SystemRegistry();
+        this.animations = new AnimationClock(this);
         this.name = name;
+        registerDefaults();
     }
 
     /**
@@ -76,34 +102,65 @@ public class AegisGame implements java.lang.Runnable {
      */
     public AegisGame(String name, float targetFramerate) {
         this.timer = new TimeKeeper(this, targetFramerate);
+        this.profiler = new FrameProfiler();
+        this.scheduler = new SystemScheduler();
+        this.jobs = new JobSystem();
+        this.executor = new GameExecutor();
+        this.systems = new SystemRegistry();
+        this.animations = new AnimationClock(this);
         this.name = name;
+        registerDefaults();
     }
 
     /**
-     * Method to set a Aegis2DGraphics system for the game
+     * Registers the job system and the scheduler, which run in the systems
+     * phase, and the animation clock in the late update phase. The
+     * scheduler follows the TimeKeeper's clock so that it keeps working on a
+     * virtual clock.
+     */
+    private void registerDefaults() {
+        scheduler.setClock(new GameClock() {
+            @Override
+            public long nanoTime() {
+                return timer.getClock().nanoTime();
+            }
+        });
+        systems.register(SystemRegistry.Phase.SYSTEMS, "jobs", jobs);
+        systems.register(SystemRegistry.Phase.SYSTEMS, "scheduler", scheduler);
+        systems.register(SystemRegistry.Phase.LATE_UPDATE, "animations", animations);
+    }
+
+    /**
+     * Method to set a GameGraphics system for the game. It is registered as
+     * "graphics" in the render phase.
      *
      * @param graphics the graphics system to set
      */
-    public void set(Aegis2DGraphics graphics) {
+    public void set(GameGraphics graphics) {
         this.graphics = graphics;
+        systems.put(SystemRegistry.Phase.RENDER, "graphics", graphics);
     }
 
     /**
-     * Method to set a GameSceneManager system for the game
+     * Method to set a GameSceneManager system for the game. It is registered
+     * as "scenes" in the logic phase.
      *
      * @param scenemanager the scene manager to set
      */
     public void set(GameSceneManager scenemanager) {
         this.scenemanager = scenemanager;
+        systems.put(SystemRegistry.Phase.LOGIC, "scenes", scenemanager);
     }
 
     /**
-     * Method to set a GameInputMonitor system for the game
+     * Method to set a GameInputMonitor system for the game. It is registered
+     * as "input" in the input phase.
      *
      * @param inputmonitor the input monitor to set
      */
     public void set(GameInputMonitor inputmonitor) {
         this.input = inputmonitor;
+        systems.put(SystemRegistry.Phase.INPUT, "input", inputmonitor);
     }
 
     /**
@@ -115,12 +172,34 @@ public class AegisGame implements java.lang.Runnable {
         this.resources = resources;
     }
 
+    /**
+     * Method to set the GameExecutor used for the game's background work, such
+     * as the asynchronous code of AsyncGameScenes. This should be set before
+     * any scene submits work.
+     *
+     * @param executor the executor to set
+     */
+    public void set(GameExecutor executor) {
+        this.executor = executor;
+    }
+
     /**
      * Method to start the game after the vital systems have been initialized.
      * If any system is missing this will substitute it with the absolute
-     * default.
+     * default. Once the timer is running, the graphics system is displayed.
      */
     public void start() {
+        validate();
+        timer.start();
+        graphics.display();
+    }
+
+    /**
+     * Method which checks that all of the vital systems have been initialized
+     *
+     * @throws SystemMissingException if any vital system is missing
+     */
+    protected void validate() {
         if (graphics == null) {
             throw new SystemMissingException("The game's graphics system has not yet been initialized");
         }
@@ -133,48 +212,102 @@ public class AegisGame implements java.lang.Runnable {
         if (scenemanager.size() <= 0) {
             throw new SystemMissingException("The game requires at least one scene to run");
         }
-        timer.start();
-        graphics.getWindow().setVisible(true);
     }
 
     @Override
     public final void run() {
-        // FIRST RUN THE INPUT MONITORS TO CHECK FOR NEW INPUTS
+        step();
+        present(1.0f);
+    }
+
+    @Override
+    public final void step() {
+        // ONLY THE ITEMS QUEUED BY THE LAST STEP BEFORE A FRAME GET DRAWN
+        graphics.discardRenderList();
+
+        if (!profiler.isEnabled()) {
+            // FIRST RUN THE INPUT MONITORS TO CHECK FOR NEW INPUTS
+            updateInputMonitor();
+            // THEN RUN CUSTOM GAME CODE
+            updateGameCode();
+            // FOLLOWED BY ANY INTERNAL SYSTEMS SUCH AS PHYSICS
+            updateSystems();
+            return;
+        }
+
+        // A FRAME WHICH WASN'T PRESENTED STILL GETS ITS OWN RECORD
+        long frame = timer.getFramenumber();
+        if (uncommitted && frame != profiledFrame) {
+            profiler.commit();
+        }
+        profiledFrame = frame;
+        uncommitted = true;
+
+        // SAME AS ABOVE, BUT TIMING EACH PHASE
+        long t0 = System.nanoTime();
         updateInputMonitor();
-        // THEN RUN CUSTOM GAME CODE
+        long t1 = System.nanoTime();
         updateGameCode();
-        // FOLLOWED BY ANY INTERNAL SYSTEMS SUCH AS PHYSICS
+        long t2 = System.nanoTime();
         updateSystems();
-        // AND GRAPHICS ARE THE LAST THING THAT SHOULD BE UPDATED
+        long t3 = System.nanoTime();
+
+        profiler.add(FrameProfiler.Phase.INPUT, t1 - t0);
+        profiler.add(FrameProfiler.Phase.GAME_CODE, t2 - t1);
+        profiler.add(FrameProfiler.Phase.SYSTEMS, t3 - t2);
+        profiler.addStep();
+    }
+
+    @Override
+    public final void present(float alpha) {
+        if (!profiler.isEnabled()) {
+            // GRAPHICS ARE THE LAST THING THAT SHOULD BE UPDATED
+            updateGraphics();
+            return;
+        }
+
+        long t0 = System.nanoTime();
         updateGraphics();
+        profiler.add(FrameProfiler.Phase.GRAPHICS, System.nanoTime() - t0);
+
+        // THIS IS THE END OF THE FRAME
+        profiler.commit();
+        uncommitted = false;
     }
 
     /**
-     * Hook method which updates the input monitors
+     * Hook method which updates the pre-input and input phases, by default
+     * containing the input monitor
      */
     protected void updateInputMonitor() {
-        input.update();
+        systems.update(SystemRegistry.Phase.PRE_INPUT);
+        systems.update(SystemRegistry.Phase.INPUT);
     }
 
     /**
-     * Hook method which updates the main game code in the scene manager
+     * Hook method which updates the logic phase, by default containing the
+     * main game code in the scene manager
      */
     protected void updateGameCode() {
-        scenemanager.update();
+        systems.update(SystemRegistry.Phase.LOGIC);
     }
 
     /**
-     * Hook method which updates any extra systems, such as physics
+     * Hook method which updates the systems and late update phases, for any
+     * extra systems such as physics. By default this contains the job system
+     * followed by the scheduler, and then the animation clock.
      */
     protected void updateSystems() {
-
+        systems.update(SystemRegistry.Phase.SYSTEMS);
+        systems.update(SystemRegistry.Phase.LATE_UPDATE);
     }
 
     /**
-     * HOok method which updates the game's graphics
+     * Hook method which updates the render phase, by default containing the
+     * game's graphics
      */
     protected void updateGraphics() {
-        graphics.update();
+        systems.update(SystemRegistry.Phase.RENDER);
     }
 
     /**
@@ -203,7 +336,7 @@ public class AegisGame implements java.lang.Runnable {
     /**
      * @return the graphical system being used by the game
      */
-    public Aegis2DGraphics getGraphics() {
+    public GameGraphics getGraphics() {
         return graphics;
     }
 
@@ -214,6 +347,59 @@ public class AegisGame implements java.lang.Runnable {
         return input;
     }
 
+    /**
+     * Returns the interpolation factor between the previous and the current
+     * simulation step. RenderItems can use this to smooth out movement when
+     * the game is running on a fixed timestep.
+     *
+     * @return the interpolation factor, ranging from 0.0 to 1.0
+     */
+    public float getInterpolation() {
+        return timer.getInterpolation();
+    }
+
+    /**
+     * @return the executor running the game's background work
+     */
+    public GameExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return the registry of every runtime system the game runs
+     */
+    public SystemRegistry getSystems() {
+        return systems;
+    }
+
+    /**
+     * @return the job system updating systems in parallel
+     */
+    public JobSystem getJobs() {
+        return jobs;
+    }
+
+    /**
+     * @return the scheduler running systems at their own rates
+     */
+    public SystemScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * @return the clock advancing the animations of the current scene
+     */
+    public AnimationClock getAnimations() {
+        return animations;
+    }
+
+    /**
+     * @return the profiler timing each phase of every frame
+     */
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
     /**
      * @return the time keeping object being used by the game
      */
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RuntimeSystem which advances animations once per game step, regardless of
+ * whether or not they end up being drawn. Every animation belongs to the
+ * scene which added it, and only the animations of the game's current scene
+ * are advanced.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class AnimationClock implements RuntimeSystem {
+
+    // THE GAME WHOSE CURRENT SCENE IS ANIMATED
+    private final AegisGame game;
+
+    // THE ANIMATIONS BELONGING TO EACH SCENE
+    private final Map<GameScene, List<RuntimeSystem>> animations;
+
+    /**
+     * Constructor for a clock without any animations
+     *
+     * @param game the game whose current scene to animate
+     */
+    public AnimationClock(AegisGame game) {
+        this.game = game;
+        this.animations = new HashMap();
+    }
+
+    /**
+     * Adds an animation to be advanced every step while its scene is the
+     * current one. Adding the same animation twice has no effect.
+     *
+     * @param owner the scene the animation belongs to
+     * @param animation the animation to add
+     */
+    public synchronized void add(GameScene owner, RuntimeSystem animation) {
+        if (owner == null || animation == null) {
+            throw new IllegalArgumentException("An animation needs an owning scene");
+        }
+        List<RuntimeSystem> owned = animations.get(owner);
+        if (owned == null) {
+            owned = new ArrayList();
+            animations.put(owner, owned);
+        }
+        if (!owned.contains(animation)) {
+            owned.add(animation);
+        }
+    }
+
+    /**
+     * Stops advancing an animation
+     *
+     * @param owner the scene the animation belongs to
+     * @param animation the animation to remove
+     * @return true if the animation was registered, false otherwise
+     */
+    public synchronized boolean remove(GameScene owner, RuntimeSystem animation) {
+        List<RuntimeSystem> owned = animations.get(owner);
+        return owned != null && owned.remove(animation);
+    }
+
+    /**
+     * Stops advancing every animation belonging to a scene
+     *
+     * @param owner the scene whose animations to remove
+     */
+    public synchronized void removeAll(GameScene owner) {
+        animations.remove(owner);
+    }
+
+    /**
+     * Returns the number of animations belonging to a scene
+     *
+     * @param owner the scene to count animations for
+     * @return the number of animations
+     */
+    public synchronized int size(GameScene owner) {
+        List<RuntimeSystem> owned = animations.get(owner);
+        return owned == null ? 0 : owned.size();
+    }
+
+    /**
+     * Advances every animation belonging to the game's current scene once
+     */
+    @Override
+    public synchronized void update() {
+        GameSceneManager scenes = game.getScenes();
+        if (scenes == null) {
+            return;
+        }
+        List<RuntimeSystem> owned = animations.get(scenes.getCurrentScene());
+        if (owned == null) {
+            return;
+        }
+        for (int i = 0; i < owned.size(); i++) {
+            owned.get(i).update();
+        }
+    }
+}
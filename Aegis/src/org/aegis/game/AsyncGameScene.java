@@ -23,11 +23,14 @@
  */
 package org.aegis.game;
 
+import java.util.concurrent.Future;
+
 /**
  * A custom GameScene which allows for two separate codes - one which is
  * asynchronous with the game and one which is synchronous. The two codes run in
  * parallel with the asynchronous code being executed once on load while the
- * synchronous code is executed once per game loop.
+ * synchronous code is executed once per game loop. The asynchronous code runs
+ * on the game's shared GameExecutor and is cancelled when the scene exits.
  *
  * @author Rogue <Alice Q>
  */
@@ -45,16 +48,44 @@ public abstract class AsyncGameScene extends GameScene implements Runnable {
     }
 
     /**
-     * Entry method which creates a new thread and executes the
-     * AsyncGameScene.run() method parallel to the primary update method. If
+     * Entry method which submits the AsyncGameScene.run() method to the
+     * game's executor, running it parallel to the primary update method. If
      * this is overriden please be sure to leave a reference to the parent
      * method.
      */
     @Override
     public void onSceneEnter() {
-        Thread thread = new Thread(this);
-        thread.setPriority(Thread.NORM_PRIORITY);
-        thread.setDaemon(true);
-        thread.start();
+        submit(this);
+    }
+
+    /**
+     * Exit method which cancels all of the scene's background work,
+     * interrupting it if it's still running, before passing the call on to the
+     * update method. If this is overriden please be sure to leave a reference
+     * to the parent method.
+     */
+    @Override
+    public void onSceneExit() {
+        game.getExecutor().cancelAll(this);
+        super.onSceneExit();
+    }
+
+    /**
+     * Runs additional work in the background on behalf of this scene. This
+     * work is cancelled along with everything else when the scene exits.
+     *
+     * @param task the task to run
+     * @return a Future which can be used to cancel or wait for the task
+     */
+    protected Future<?> submit(Runnable task) {
+        return game.getExecutor().submit(this, task);
+    }
+
+    /**
+     * @return The number of this scene's background tasks which are queued or
+     * still running
+     */
+    public int getActiveTasks() {
+        return game.getExecutor().getActiveTasks(this);
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+/**
+ * Interface for Runnable objects whose simulation can be advanced separately
+ * from their rendering, allowing a TimeKeeper to run the simulation at a fixed
+ * rate independently of the framerate
+ *
+ * @author Rogue <Alice Q.>
+ */
+public interface FixedStepRunnable extends Runnable {
+
+    /**
+     * Method which advances the simulation by a single fixed step without
+     * rendering anything. This may be called zero or more times per frame.
+     */
+    public abstract void step();
+
+    /**
+     * Method which renders the current state of the simulation once. This is
+     * called exactly once per frame, after all of that frame's steps.
+     *
+     * @param alpha the interpolation factor between the previous and the
+     * current simulation step, ranging from 0.0 to 1.0
+     */
+    public abstract void present(float alpha);
+}
@@ -0,0 +1,392 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Logarithmically bucketed histogram of frame times which keeps a sliding
+ * window of recent frames as well as a lifetime total. Recording a value never
+ * allocates, and any number of threads may take snapshots while a single
+ * thread keeps recording. Each power of two is split into 16 linear
+ * sub-buckets, so reported values are within roughly 6% of the actual ones.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class FrameHistogram {
+
+    // BUCKET LAYOUT
+    private final static int SUB_BITS = 4;
+    private final static int SUB_COUNT = 1 << SUB_BITS;
+    private final static int MAX_EXPONENT = 40;     // ANYTHING ABOVE 2^41 NANOSECONDS SHARES THE LAST BUCKET
+    public final static int BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    // DEFAULT WINDOW
+    public final static int DEFAULT_SLICE_FRAMES = 60;
+    public final static int DEFAULT_SLICE_COUNT = 10;
+
+    // WINDOW LAYOUT
+    private final int sliceFrames;
+    private final int sliceCount;
+
+    // SLIDING WINDOW STORAGE, ONE SET OF BUCKETS PER SLICE
+    private final AtomicLongArray sliceBuckets;
+    private final AtomicLongArray sliceSamples;
+    private final AtomicLongArray sliceSums;
+    private final AtomicLongArray sliceMax;
+    private final AtomicLongArray sliceStutters;
+
+    // LIFETIME STORAGE
+    private final AtomicLongArray buckets;
+    private volatile long samples;
+    private volatile long sum;
+    private volatile long max;
+    private volatile long stutters;
+
+    // THE SLICE CURRENTLY BEING WRITTEN TO
+    private int slice;
+
+    // FRAMES ABOVE THIS ARE COUNTED AS STUTTERS
+    private volatile long stutterThreshold;
+
+    /**
+     * Constructor for a histogram using the default window of 10 slices of 60
+     * frames
+     *
+     * @param stutterThreshold the frame time in nanoseconds above which a
+     * frame counts as a stutter
+     */
+    public FrameHistogram(long stutterThreshold) {
+        this(DEFAULT_SLICE_FRAMES, DEFAULT_SLICE_COUNT, stutterThreshold);
+    }
+
+    /**
+     * Constructor for a histogram with a custom sliding window. The window
+     * covers the most recent sliceFrames * sliceCount frames and moves forward
+     * one slice at a time.
+     *
+     * @param sliceFrames the number of frames in each slice of the window
+     * @param sliceCount the number of slices in the window
+     * @param stutterThreshold the frame time in nanoseconds above which a
+     * frame counts as a stutter
+     */
+    public FrameHistogram(int sliceFrames, int sliceCount, long stutterThreshold) {
+        if (sliceFrames <= 0 || sliceCount <= 0) {
+            throw new IllegalArgumentException("The window must contain at least one frame");
+        }
+        this.sliceFrames = sliceFrames;
+        this.sliceCount = sliceCount;
+        this.stutterThreshold = stutterThreshold;
+
+        sliceBuckets = new AtomicLongArray(sliceCount * BUCKET_COUNT);
+        sliceSamples = new AtomicLongArray(sliceCount);
+        sliceSums = new AtomicLongArray(sliceCount);
+        sliceMax = new AtomicLongArray(sliceCount);
+        sliceStutters = new AtomicLongArray(sliceCount);
+        buckets = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    /**
+     * Records a single frame time. This must only be called from one thread at
+     * a time.
+     *
+     * @param nanos the frame time in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        // MOVE THE WINDOW FORWARD IF THE CURRENT SLICE IS FULL
+        if (sliceSamples.get(slice) >= sliceFrames) {
+            slice = (slice + 1) % sliceCount;
+            clearSlice(slice);
+        }
+
+        // SINCE THERE'S ONLY ONE WRITER WE CAN GET AWAY WITH ORDERED WRITES INSTEAD OF ATOMIC INCREMENTS
+        int index = indexOf(nanos);
+        int offset = slice * BUCKET_COUNT;
+        sliceBuckets.lazySet(offset + index, sliceBuckets.get(offset + index) + 1);
+        sliceSums.lazySet(slice, sliceSums.get(slice) + nanos);
+        if (nanos > sliceMax.get(slice)) {
+            sliceMax.lazySet(slice, nanos);
+        }
+        buckets.lazySet(index, buckets.get(index) + 1);
+        sum += nanos;
+        if (nanos > max) {
+            max = nanos;
+        }
+
+        if (nanos > stutterThreshold) {
+            sliceStutters.lazySet(slice, sliceStutters.get(slice) + 1);
+            stutters++;
+        }
+
+        // THE SAMPLE COUNTS GO LAST SO READERS NEVER SEE MORE SAMPLES THAN BUCKET ENTRIES
+        sliceSamples.lazySet(slice, sliceSamples.get(slice) + 1);
+        samples++;
+    }
+
+    /**
+     * Empties a single slice of the sliding window
+     *
+     * @param s the index of the slice
+     */
+    private void clearSlice(int s) {
+        sliceSamples.set(s, 0);
+        int offset = s * BUCKET_COUNT;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            sliceBuckets.lazySet(offset + i, 0);
+        }
+        sliceSums.lazySet(s, 0);
+        sliceMax.lazySet(s, 0);
+        sliceStutters.lazySet(s, 0);
+    }
+
+    /**
+     * Sets the frame time above which a frame is counted as a stutter. This
+     * only affects frames recorded afterwards.
+     *
+     * @param nanos the new threshold in nanoseconds
+     */
+    public void setStutterThreshold(long nanos) {
+        this.stutterThreshold = nanos;
+    }
+
+    /**
+     * @return The frame time in nanoseconds above which a frame counts as a
+     * stutter
+     */
+    public long getStutterThreshold() {
+        return stutterThreshold;
+    }
+
+    /**
+     * @return The maximum number of frames covered by the sliding window
+     */
+    public int getWindowSize() {
+        return sliceFrames * sliceCount;
+    }
+
+    /**
+     * @return The total number of frames ever recorded
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Takes a snapshot of the entire sliding window. This is safe to call from
+     * any thread while frames are being recorded, although a snapshot taken
+     * exactly as the window moves may miss a few frames.
+     *
+     * @return a snapshot of the most recent frames
+     */
+    public Snapshot snapshot() {
+        return snapshot(sliceCount);
+    }
+
+    /**
+     * Takes a snapshot of the most recent slices of the sliding window
+     *
+     * @param slices the number of slices to include, counting the one
+     * currently being written to
+     * @return a snapshot of the most recent frames
+     */
+    public Snapshot snapshot(int slices) {
+        slices = Math.max(1, Math.min(slices, sliceCount));
+
+        Snapshot snap = new Snapshot();
+        int current = slice;
+        for (int n = 0; n < slices; n++) {
+            int s = (current - n + sliceCount) % sliceCount;
+            snap.count += sliceSamples.get(s);
+            int offset = s * BUCKET_COUNT;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                snap.buckets[i] += sliceBuckets.get(offset + i);
+            }
+            snap.sum += sliceSums.get(s);
+            snap.max = Math.max(snap.max, sliceMax.get(s));
+            snap.stutters += sliceStutters.get(s);
+        }
+        return snap;
+    }
+
+    /**
+     * Takes a snapshot of every frame ever recorded
+     *
+     * @return a snapshot of the lifetime statistics
+     */
+    public Snapshot snapshotLifetime() {
+        Snapshot snap = new Snapshot();
+        snap.count = samples;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snap.buckets[i] = buckets.get(i);
+        }
+        snap.sum = sum;
+        snap.max = max;
+        snap.stutters = stutters;
+        return snap;
+    }
+
+    /**
+     * Finds the bucket a value belongs to
+     *
+     * @param value a non-negative value
+     * @return the index of the value's bucket
+     */
+    static int indexOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Finds the highest value which belongs to a bucket
+     *
+     * @param index the index of the bucket
+     * @return the highest value in the bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long lowest = (long) (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Immutable copy of the histogram's contents at a given point in time
+     */
+    public static class Snapshot {
+
+        private final long[] buckets;
+        private long count;
+        private long sum;
+        private long max;
+        private long stutters;
+
+        /**
+         * Constructor for an empty snapshot
+         */
+        private Snapshot() {
+            buckets = new long[BUCKET_COUNT];
+        }
+
+        /**
+         * Returns the frame time below which a given percentage of the frames
+         * fall
+         *
+         * @param percentile the percentile to find, between 0.0 and 100.0
+         * @return the frame time in nanoseconds, or 0 if the snapshot is empty
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100.0 * count);
+            rank = Math.max(1, Math.min(rank, count));
+
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    // NEVER REPORT MORE THAN THE ACTUAL MAXIMUM
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return The median frame time in nanoseconds
+         */
+        public long getP50() {
+            return getPercentile(50.0);
+        }
+
+        /**
+         * @return The 90th percentile frame time in nanoseconds
+         */
+        public long getP90() {
+            return getPercentile(90.0);
+        }
+
+        /**
+         * @return The 99th percentile frame time in nanoseconds
+         */
+        public long getP99() {
+            return getPercentile(99.0);
+        }
+
+        /**
+         * @return The 99.9th percentile frame time in nanoseconds
+         */
+        public long getP999() {
+            return getPercentile(99.9);
+        }
+
+        /**
+         * @return The longest frame time in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return The mean frame time in nanoseconds
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @return The number of frames in the snapshot
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The number of frames above the stutter threshold
+         */
+        public long getStutters() {
+            return stutters;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[n=%d\tp50 %.2f\tp90 %.2f\tp99 %.2f\tp99.9 %.2f\tmax %.2f\tstutters %d]",
+                    count, getP50() / 1000000.0, getP90() / 1000000.0, getP99() / 1000000.0, getP999() / 1000000.0, max / 1000000.0, stutters);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Object which waits until a given deadline with high precision while keeping
+ * CPU usage low. In its adaptive mode it measures how much the operating
+ * system oversleeps at runtime, parks the thread for most of the wait and only
+ * spins for a short calibrated tail before the deadline. The older sleep-based
+ * modes are kept so that their jitter can be compared.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class FramePacer {
+
+    // LIMITS FOR THE OVERSLEEP ESTIMATE, IN NANOSECONDS
+    private final static long MIN_ESTIMATE = 20000;
+    private final static long MAX_ESTIMATE = 4000000;
+    private final static long INITIAL_ESTIMATE = 1000000;
+
+    // WEIGHT GIVEN TO NEW OVERSLEEP MEASUREMENTS
+    private final static double CALIBRATION_WEIGHT = 0.1;
+
+    // THE WAITING STRATEGY
+    private volatile Mode mode;
+
+    // CALIBRATION
+    private double oversleepMean;
+    private double oversleepVariance;
+    private volatile long oversleepEstimate;
+
+    // STATISTICS
+    private volatile long samples;
+    private volatile long lastJitter;       // HOW LATE THE LAST WAIT WOKE UP, IN NANOSECONDS
+    private volatile long maxJitter;
+    private volatile long totalJitter;
+    private volatile long totalWaitNanos;
+    private volatile long totalSpinNanos;
+
+    /**
+     * Constructor for a pacer using the adaptive mode
+     */
+    public FramePacer() {
+        this(Mode.ADAPTIVE);
+    }
+
+    /**
+     * Constructor for a pacer using a specified waiting strategy
+     *
+     * @param mode the waiting strategy to use
+     */
+    public FramePacer(Mode mode) {
+        this.mode = mode;
+        this.oversleepMean = INITIAL_ESTIMATE;
+        this.oversleepVariance = 0;
+        this.oversleepEstimate = INITIAL_ESTIMATE;
+    }
+
+    /**
+     * Changes the waiting strategy. Statistics are preserved, so call
+     * resetStatistics() when comparing two modes.
+     *
+     * @param mode the new waiting strategy
+     */
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * @return the current waiting strategy
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Blocks the current thread until System.nanoTime() reaches the deadline.
+     * Returns immediately if the deadline has already passed, in which case
+     * nothing is recorded in the statistics.
+     *
+     * @param deadline the time to wait until, as given by System.nanoTime()
+     */
+    public void waitUntil(long deadline) {
+        long start = System.nanoTime();
+        if (deadline - start <= 0) {
+            return;
+        }
+
+        long spinStart;
+        switch (mode) {
+            case SLEEP:
+                sleep((deadline - start) / 1000000);
+                spinStart = System.nanoTime();
+                break;
+            case SLEEP_YIELD:
+                sleep((deadline - start) / 1000000);
+                spinStart = System.nanoTime();
+                while (System.nanoTime() - deadline < 0) {
+                    Thread.yield();
+                }
+                break;
+            default:
+                spinStart = park(deadline);
+                while (System.nanoTime() - deadline < 0) {
+                    // SPIN FOR THE SHORT TAIL
+                }
+        }
+
+        // RECORD HOW FAR OFF WE WERE
+        long end = System.nanoTime();
+        long jitter = end - deadline;
+        lastJitter = jitter;
+        if (Math.abs(jitter) > maxJitter) {
+            maxJitter = Math.abs(jitter);
+        }
+        totalJitter += Math.abs(jitter);
+        totalWaitNanos += end - start;
+        totalSpinNanos += Math.max(0, end - spinStart);
+        samples++;
+    }
+
+    /**
+     * Parks the current thread until just before the deadline, leaving enough
+     * time for the expected oversleep, and updates the oversleep estimate
+     *
+     * @param deadline the time to wait until
+     * @return the time at which the thread stopped parking
+     */
+    private long park(long deadline) {
+        long now = System.nanoTime();
+        long request = deadline - now - oversleepEstimate;
+        while (request > 0) {
+            LockSupport.parkNanos(this, request);
+            long woke = System.nanoTime();
+            calibrate(woke - now - request);
+
+            // PARKING MAY RETURN EARLY, SO TRY AGAIN IF THERE'S STILL TIME
+            now = woke;
+            request = deadline - now - oversleepEstimate;
+        }
+        return now;
+    }
+
+    /**
+     * Updates the oversleep estimate with a new measurement, keeping it at the
+     * mean plus two standard deviations of recent measurements
+     *
+     * @param oversleep the measured oversleep, in nanoseconds
+     */
+    private void calibrate(long oversleep) {
+        double diff = oversleep - oversleepMean;
+        oversleepMean += CALIBRATION_WEIGHT * diff;
+        oversleepVariance = (1 - CALIBRATION_WEIGHT) * (oversleepVariance + CALIBRATION_WEIGHT * diff * diff);
+
+        long estimate = (long) (oversleepMean + 2 * Math.sqrt(oversleepVariance));
+        oversleepEstimate = Math.min(MAX_ESTIMATE, Math.max(MIN_ESTIMATE, estimate));
+    }
+
+    /**
+     * Sleeps for a number of milliseconds, ignoring interrupts
+     *
+     * @param millis the number of milliseconds to sleep
+     */
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+        }
+    }
+
+    // STATISTICS
+    /**
+     * @return The current estimate of how much parking oversleeps, in
+     * nanoseconds. This is also the length of the spinning tail.
+     */
+    public long getOversleepEstimate() {
+        return oversleepEstimate;
+    }
+
+    /**
+     * @return The number of waits recorded
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return How late the last wait woke up past its deadline, in nanoseconds
+     */
+    public long getLastJitter() {
+        return lastJitter;
+    }
+
+    /**
+     * @return The largest absolute distance between a deadline and the actual
+     * wake time, in nanoseconds
+     */
+    public long getMaxJitter() {
+        return maxJitter;
+    }
+
+    /**
+     * @return The mean absolute distance between a deadline and the actual
+     * wake time, in nanoseconds
+     */
+    public double getAverageJitter() {
+        long n = samples;
+        return n == 0 ? 0 : (double) totalJitter / n;
+    }
+
+    /**
+     * @return The fraction of the total waiting time which was spent spinning
+     * rather than sleeping, as a rough measure of the CPU cost of waiting
+     */
+    public double getSpinRatio() {
+        long wait = totalWaitNanos;
+        return wait == 0 ? 0 : (double) totalSpinNanos / wait;
+    }
+
+    /**
+     * Resets all of the jitter statistics, but not the calibration
+     */
+    public void resetStatistics() {
+        samples = 0;
+        lastJitter = 0;
+        maxJitter = 0;
+        totalJitter = 0;
+        totalWaitNanos = 0;
+        totalSpinNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s\tavg %.3fms\tmax %.3fms\tspin %.1f%%]", mode, getAverageJitter() / 1000000, maxJitter / 1000000.0, 100 * getSpinRatio());
+    }
+
+    /**
+     * The different strategies a FramePacer can use to wait
+     */
+    public enum Mode {
+
+        /**
+         * Sleeps in whole milliseconds only. Cheap but imprecise.
+         */
+        SLEEP,
+        /**
+         * Sleeps in whole milliseconds and then yields until the deadline.
+         * Precise but spins for the whole sub-millisecond remainder and any
+         * timer slack.
+         */
+        SLEEP_YIELD,
+        /**
+         * Parks for most of the wait using a calibrated oversleep estimate and
+         * spins only for a short tail.
+         */
+        ADAPTIVE
+    }
+}
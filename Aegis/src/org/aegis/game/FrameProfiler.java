@@ -0,0 +1,447 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Built-in profiler which times each phase of every frame and keeps the
+ * results in a fixed-size ring buffer of per-frame records. Time spent within
+ * each scene is also accumulated separately. Timings are added by the game
+ * thread and committed once per frame, while any other thread may query the
+ * most recent records.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class FrameProfiler {
+
+    // DEFAULT NUMBER OF FRAMES KEPT IN THE RING BUFFER
+    public final static int DEFAULT_CAPACITY = 600;
+
+    // NUMBER OF PHASES PER RECORD
+    private final static int PHASES = Phase.values().length;
+
+    // RING BUFFER STORAGE
+    private final int capacity;
+    private final AtomicLongArray frames;       // FRAME NUMBER STORED IN EACH SLOT, OR -1 WHILE BEING WRITTEN
+    private final AtomicLongArray phaseNanos;
+    private final AtomicLongArray sceneNanos;
+    private final AtomicLongArray steps;
+    private final String[] sceneIDs;
+
+    // THE RECORD CURRENTLY BEING BUILT
+    private final long[] pendingPhases;
+    private long pendingSceneNanos;
+    private long pendingSteps;
+    private String pendingScene;
+
+    // TOTAL FRAMES COMMITTED SO FAR
+    private volatile long framecount;
+
+    // ACCUMULATED TIME PER SCENE
+    private final ConcurrentHashMap<String, SceneCost> sceneCosts;
+
+    // WHETHER OR NOT ANYTHING IS RECORDED
+    private volatile boolean enabled;
+
+    /**
+     * Constructor for a profiler keeping the default number of frames
+     */
+    public FrameProfiler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for a profiler keeping a set number of frames
+     *
+     * @param capacity the number of frames to keep in the ring buffer
+     */
+    public FrameProfiler(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive and non-zero");
+        }
+        this.capacity = capacity;
+        this.frames = new AtomicLongArray(capacity);
+        this.phaseNanos = new AtomicLongArray(capacity * PHASES);
+        this.sceneNanos = new AtomicLongArray(capacity);
+        this.steps = new AtomicLongArray(capacity);
+        this.sceneIDs = new String[capacity];
+        this.pendingPhases = new long[PHASES];
+        this.sceneCosts = new ConcurrentHashMap();
+        this.enabled = true;
+
+        for (int i = 0; i < capacity; i++) {
+            frames.set(i, -1);
+        }
+    }
+
+    /**
+     * Turns the profiler on or off. While off, nothing is recorded.
+     *
+     * @param on true in order to record frames, false otherwise
+     */
+    public void setEnabled(boolean on) {
+        this.enabled = on;
+    }
+
+    /**
+     * @return True if the profiler is currently recording frames
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The number of frames kept in the ring buffer
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The total number of frames recorded so far
+     */
+    public long getFrameCount() {
+        return framecount;
+    }
+
+    // RECORDING
+    // - add
+    // - addScene
+    // - addStep
+    // - commit
+    /**
+     * Adds time spent in a phase to the current frame. A phase may be added
+     * multiple times in a frame, such as when running several fixed steps.
+     *
+     * @param phase the phase the time was spent in
+     * @param nanos the time spent, in nanoseconds
+     */
+    public void add(Phase phase, long nanos) {
+        if (enabled) {
+            pendingPhases[phase.ordinal()] += nanos;
+        }
+    }
+
+    /**
+     * Adds time spent updating a scene to the current frame
+     *
+     * @param sceneID the identifier of the scene which ran
+     * @param nanos the time spent, in nanoseconds
+     */
+    public void addScene(String sceneID, long nanos) {
+        if (!enabled) {
+            return;
+        }
+        pendingScene = sceneID;
+        pendingSceneNanos += nanos;
+
+        SceneCost cost = sceneCosts.get(sceneID);
+        if (cost == null) {
+            cost = new SceneCost();
+            sceneCosts.put(sceneID, cost);
+        }
+        cost.nanos += nanos;
+        cost.calls++;
+    }
+
+    /**
+     * Counts one simulation step towards the current frame
+     */
+    public void addStep() {
+        if (enabled) {
+            pendingSteps++;
+        }
+    }
+
+    /**
+     * Stores the current frame in the ring buffer and starts a new one
+     */
+    public void commit() {
+        if (!enabled) {
+            return;
+        }
+        long frame = framecount;
+        int slot = (int) (frame % capacity);
+
+        // MARK THE SLOT AS BEING WRITTEN SO READERS DON'T PICK UP HALF A RECORD
+        frames.set(slot, -1);
+        for (int p = 0; p < PHASES; p++) {
+            phaseNanos.lazySet(slot * PHASES + p, pendingPhases[p]);
+            pendingPhases[p] = 0;
+        }
+        sceneNanos.lazySet(slot, pendingSceneNanos);
+        steps.lazySet(slot, pendingSteps);
+        sceneIDs[slot] = pendingScene;
+        frames.set(slot, frame);
+
+        pendingSceneNanos = 0;
+        pendingSteps = 0;
+        pendingScene = null;
+        framecount = frame + 1;
+    }
+
+    // QUERIES
+    // - get
+    // - getLatest
+    // - getRecent
+    // - getFramesOver
+    // - getAverage
+    // - getSceneTime
+    // - getSceneCalls
+    /**
+     * Returns the record of a given frame, if it is still in the ring buffer
+     *
+     * @param frame the number of the frame, starting at 0
+     * @return the frame's record, or null if it has been overwritten or hasn't
+     * happened yet
+     */
+    public FrameRecord get(long frame) {
+        if (frame < 0) {
+            return null;
+        }
+        int slot = (int) (frame % capacity);
+        if (frames.get(slot) != frame) {
+            return null;
+        }
+
+        long[] phases = new long[PHASES];
+        for (int p = 0; p < PHASES; p++) {
+            phases[p] = phaseNanos.get(slot * PHASES + p);
+        }
+        FrameRecord record = new FrameRecord(frame, phases, sceneIDs[slot], sceneNanos.get(slot), (int) steps.get(slot));
+
+        // IF THE SLOT WAS REWRITTEN WHILE READING THEN THE RECORD IS GONE
+        return frames.get(slot) == frame ? record : null;
+    }
+
+    /**
+     * @return the record of the most recently completed frame, or null if
+     * there is none
+     */
+    public FrameRecord getLatest() {
+        return get(framecount - 1);
+    }
+
+    /**
+     * Returns the records of the most recent frames, newest first
+     *
+     * @param count the maximum number of frames to return
+     * @return a List of up to count records
+     */
+    public List<FrameRecord> getRecent(int count) {
+        long last = framecount - 1;
+        count = Math.min(count, capacity);
+        List<FrameRecord> records = new ArrayList(count);
+        for (long f = last; f > last - count && f >= 0; f--) {
+            FrameRecord record = get(f);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns every frame in the ring buffer whose total time went over a
+     * budget, newest first
+     *
+     * @param budgetNanos the frame budget in nanoseconds
+     * @return a List of the records of every late frame
+     */
+    public List<FrameRecord> getFramesOver(long budgetNanos) {
+        List<FrameRecord> late = new ArrayList();
+        for (FrameRecord record : getRecent(capacity)) {
+            if (record.getTotal() > budgetNanos) {
+                late.add(record);
+            }
+        }
+        return late;
+    }
+
+    /**
+     * Returns the average time spent in a phase over the most recent frames
+     *
+     * @param phase the phase to average
+     * @param count the number of frames to average over
+     * @return the average time in nanoseconds
+     */
+    public double getAverage(Phase phase, int count) {
+        List<FrameRecord> records = getRecent(count);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        long total = 0;
+        for (FrameRecord record : records) {
+            total += record.get(phase);
+        }
+        return (double) total / records.size();
+    }
+
+    /**
+     * Returns the total time ever spent updating a scene
+     *
+     * @param sceneID the identifier of the scene
+     * @return the total time in nanoseconds
+     */
+    public long getSceneTime(String sceneID) {
+        SceneCost cost = sceneCosts.get(sceneID);
+        return cost == null ? 0 : cost.nanos;
+    }
+
+    /**
+     * Returns the number of times a scene has been updated
+     *
+     * @param sceneID the identifier of the scene
+     * @return the number of updates
+     */
+    public long getSceneCalls(String sceneID) {
+        SceneCost cost = sceneCosts.get(sceneID);
+        return cost == null ? 0 : cost.calls;
+    }
+
+    /**
+     * The different phases of a frame which are timed separately
+     */
+    public enum Phase {
+
+        INPUT, GAME_CODE, SYSTEMS, GRAPHICS
+    }
+
+    /**
+     * Immutable record of the time spent in a single frame
+     */
+    public static class FrameRecord {
+
+        private final long frame;
+        private final long[] phases;
+        private final String sceneID;
+        private final long sceneNanos;
+        private final int steps;
+
+        /**
+         * Constructor
+         *
+         * @param frame the frame's number
+         * @param phases the time spent in each phase, indexed by ordinal
+         * @param sceneID the scene which ran during the frame
+         * @param sceneNanos the time spent within the scene
+         * @param steps the number of simulation steps run during the frame
+         */
+        private FrameRecord(long frame, long[] phases, String sceneID, long sceneNanos, int steps) {
+            this.frame = frame;
+            this.phases = phases;
+            this.sceneID = sceneID;
+            this.sceneNanos = sceneNanos;
+            this.steps = steps;
+        }
+
+        /**
+         * @return The frame's number
+         */
+        public long getFrame() {
+            return frame;
+        }
+
+        /**
+         * Returns the time spent in a given phase
+         *
+         * @param phase the phase to look up
+         * @return the time spent in nanoseconds
+         */
+        public long get(Phase phase) {
+            return phases[phase.ordinal()];
+        }
+
+        /**
+         * @return The time spent in all phases combined, in nanoseconds
+         */
+        public long getTotal() {
+            long total = 0;
+            for (long nanos : phases) {
+                total += nanos;
+            }
+            return total;
+        }
+
+        /**
+         * @return The phase which took the most time during the frame
+         */
+        public Phase getDominantPhase() {
+            Phase[] all = Phase.values();
+            Phase dominant = all[0];
+            for (Phase phase : all) {
+                if (phases[phase.ordinal()] > phases[dominant.ordinal()]) {
+                    dominant = phase;
+                }
+            }
+            return dominant;
+        }
+
+        /**
+         * @return The identifier of the last scene which ran during the frame,
+         * or null if none did
+         */
+        public String getSceneID() {
+            return sceneID;
+        }
+
+        /**
+         * @return The time spent within the scene, in nanoseconds
+         */
+        public long getSceneTime() {
+            return sceneNanos;
+        }
+
+        /**
+         * @return The number of simulation steps run during the frame
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append('[').append(frame).append(']');
+            for (Phase phase : Phase.values()) {
+                sb.append(String.format("\t%s %.3f", phase, phases[phase.ordinal()] / 1000000.0));
+            }
+            sb.append(String.format("\t%s %.3f", sceneID, sceneNanos / 1000000.0));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Accumulated time spent within a single scene
+     */
+    private static class SceneCost {
+
+        private volatile long nanos;
+        private volatile long calls;
+    }
+}
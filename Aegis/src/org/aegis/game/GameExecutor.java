@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executor which runs background work on behalf of GameScenes. Every
+ * task is tracked under the scene which submitted it, so that all of a
+ * scene's work can be counted and cancelled when the scene exits instead of
+ * being left running.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class GameExecutor {
+
+    // THE UNDERLYING EXECUTOR
+    private final ExecutorService executor;
+
+    // ACTIVE TASKS FOR EACH SCENE
+    private final ConcurrentHashMap<GameScene, Set<Future<?>>> tasks;
+
+    /**
+     * Constructor for an executor backed by a cached pool of daemon threads
+     */
+    public GameExecutor() {
+        this(Executors.newCachedThreadPool(new ThreadFactory() {
+
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "AEGIS Worker-" + count.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * Constructor for an executor backed by a custom ExecutorService
+     *
+     * @param executor the ExecutorService to run tasks on
+     */
+    public GameExecutor(ExecutorService executor) {
+        this.executor = executor;
+        this.tasks = new ConcurrentHashMap();
+    }
+
+    /**
+     * Creates an executor which runs each task on its own virtual thread when
+     * the runtime supports them, or on the default thread pool otherwise
+     *
+     * @return a new GameExecutor
+     */
+    public static GameExecutor withVirtualThreads() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new GameExecutor((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException ex) {
+            return new GameExecutor();
+        }
+    }
+
+    /**
+     * Runs a task in the background on behalf of a scene
+     *
+     * @param owner the scene the task belongs to
+     * @param task the task to run
+     * @return a Future which can be used to cancel or wait for the task
+     */
+    public Future<?> submit(GameScene owner, Runnable task) {
+        Set<Future<?>> owned = tasks.get(owner);
+        if (owned == null) {
+            owned = Collections.newSetFromMap(new ConcurrentHashMap<Future<?>, Boolean>());
+            Set<Future<?>> existing = tasks.putIfAbsent(owner, owned);
+            if (existing != null) {
+                owned = existing;
+            }
+        }
+
+        SceneTask future = new SceneTask(task, owned);
+        owned.add(future);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Cancels every task belonging to a scene, interrupting the ones which are
+     * already running. Interrupted tasks still count as active until they
+     * actually return.
+     *
+     * @param owner the scene whose tasks to cancel
+     * @return the number of tasks cancelled
+     */
+    public int cancelAll(GameScene owner) {
+        Set<Future<?>> owned = tasks.get(owner);
+        if (owned == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Future<?> future : owned) {
+            if (future.cancel(true)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of tasks belonging to a scene which are queued or
+     * running
+     *
+     * @param owner the scene to count tasks for
+     * @return the number of active tasks
+     */
+    public int getActiveTasks(GameScene owner) {
+        Set<Future<?>> owned = tasks.get(owner);
+        return owned == null ? 0 : owned.size();
+    }
+
+    /**
+     * @return The total number of tasks which are queued or running
+     */
+    public int getActiveTasks() {
+        int count = 0;
+        for (Set<Future<?>> owned : tasks.values()) {
+            count += owned.size();
+        }
+        return count;
+    }
+
+    /**
+     * Cancels every task and stops the underlying executor
+     */
+    public void shutdown() {
+        for (GameScene owner : tasks.keySet()) {
+            cancelAll(owner);
+        }
+        executor.shutdownNow();
+        tasks.clear();
+    }
+
+    /**
+     * Task which removes itself from its scene's set of active tasks once its
+     * run method has returned, so that a cancelled task which is still running
+     * keeps being counted
+     */
+    private static class SceneTask extends FutureTask<Object> {
+
+        private final Set<Future<?>> owned;
+
+        private SceneTask(Runnable task, Set<Future<?>> owned) {
+            super(task, null);
+            this.owned = owned;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                owned.remove(this);
+            }
+        }
+    }
+}
@@ -60,6 +60,26 @@ public abstract class GameScene {
         return sceneID;
     }
 
+    /**
+     * Adds an animation, such as a Sprite2D, to be advanced once every step
+     * while this is the game's current scene
+     *
+     * @param animation the animation to add
+     */
+    protected final void addAnimation(RuntimeSystem animation) {
+        game.getAnimations().add(this, animation);
+    }
+
+    /**
+     * Stops advancing one of this scene's animations
+     *
+     * @param animation the animation to remove
+     * @return true if the animation had been added, false otherwise
+     */
+    protected final boolean removeAnimation(RuntimeSystem animation) {
+        return game.getAnimations().remove(this, animation);
+    }
+
     /**
      * Hook method for scene entry. Use this for things such as initializations
      * and GUI loading. By default (as in, when not overriden) this method
@@ -59,11 +59,28 @@ public class GameSceneManager implements RuntimeSystem {
 
     /**
      * Main update method which simply passes the call onto the appropriate
-     * scene and method
+     * scene and method, timing the scene if the game's profiler is enabled
      */
     @Override
     public final void update() {
+        FrameProfiler profiler = game.getProfiler();
+        if (profiler == null || !profiler.isEnabled()) {
+            updateScene();
+            return;
+        }
+
+        // TIME THE SCENE, MAKING SURE TO CHARGE IT TO THE SCENE THAT WAS RUNNING BEFORE ANY TRANSITION
+        GameScene scene = currentScene;
+        long start = System.nanoTime();
+        updateScene();
+        profiler.addScene(scene.getSceneID(), System.nanoTime() - start);
+    }
 
+    /**
+     * Passes the call onto the appropriate scene and method depending on the
+     * current scene's state
+     */
+    private void updateScene() {
         switch (currentScene.state) {
             case ENTER:
                 currentScene.onSceneEnter();
@@ -75,6 +92,7 @@ public class GameSceneManager implements RuntimeSystem {
             case EXIT:
                 currentScene.onSceneExit();
                 currentScene.state = SceneState.STOPPED;
+                game.getExecutor().cancelAll(currentScene);
 
                 currentScene = nextScene;
                 currentScene.state = SceneState.ENTER;
@@ -136,11 +154,16 @@ public class GameSceneManager implements RuntimeSystem {
     /**
      * Forces the next GameScene on the next frame, starting at the
      * initialization method (Which defaults to the standard update method
-     * unless it is overwritten)
+     * unless it is overwritten). Any background work belonging to the current
+     * scene is cancelled.
      *
      * @param sceneID the ID of the next scene to go to
      */
     public void forceNext(String sceneID) {
+        // THE CURRENT SCENE NEVER GETS TO EXIT, SO STOP ITS BACKGROUND WORK HERE
+        if (currentScene != null) {
+            game.getExecutor().cancelAll(currentScene);
+        }
         currentScene = scenes.get(sceneID);
         currentScene.state = SceneState.ENTER;
     }
@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+/**
+ * Object which drives an AegisGame for a set number of frames as fast as
+ * possible on a VirtualClock, without a window or a separate timing thread.
+ * Every frame advances the virtual clock by exactly the same amount, so the
+ * game's TimeKeeper statistics and fixed timesteps behave deterministically
+ * while the actual time each frame took is recorded separately. This is meant
+ * for benchmarks and for simulating long stretches of gameplay, and should be
+ * used with a GameGraphics which doesn't require a display, such as
+ * OffscreenGraphics.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class HeadlessRunner {
+
+    // THE GAME TO RUN
+    private final AegisGame game;
+
+    // THE VIRTUAL CLOCK THE GAME RUNS ON
+    private final VirtualClock clock;
+
+    // VIRTUAL TIME EACH FRAME TAKES
+    private long frameNanos;
+
+    // STATISTICS
+    private final FrameHistogram realTimes;     // ACTUAL TIME TAKEN BY EACH FRAME
+    private long framecount;
+    private long realNanos;
+
+    /**
+     * Constructor which prepares a game to run on a virtual clock, with each
+     * frame taking the game's target frame time
+     *
+     * @param game the game to run
+     */
+    public HeadlessRunner(AegisGame game) {
+        this.game = game;
+        this.clock = new VirtualClock();
+        this.frameNanos = game.getTimeKeeper().getTargetNanos();
+        this.realTimes = new FrameHistogram(frameNanos);
+
+        game.getTimeKeeper().setClock(clock);
+    }
+
+    /**
+     * Sets the virtual time each frame takes
+     *
+     * @param nanos the virtual frame time in nanoseconds
+     */
+    public void setFrameTime(long nanos) {
+        if (nanos <= 0) {
+            throw new IllegalArgumentException("Frame time must be positive and non-zero");
+        }
+        this.frameNanos = nanos;
+    }
+
+    /**
+     * @return The virtual time each frame takes, in nanoseconds
+     */
+    public long getFrameTime() {
+        return frameNanos;
+    }
+
+    /**
+     * Runs the game for a number of frames as fast as possible. The game's
+     * systems are checked before the first frame, same as AegisGame.start().
+     *
+     * @param frames the number of frames to run
+     * @return the actual time taken, in nanoseconds
+     */
+    public long runFrames(long frames) {
+        game.validate();
+
+        TimeKeeper timer = game.getTimeKeeper();
+        if (framecount == 0) {
+            timer.prepare();
+        }
+
+        long begin = System.nanoTime();
+        for (long i = 0; i < frames; i++) {
+            long realStart = System.nanoTime();
+
+            long startTime = timer.runFrame();
+            clock.advance(frameNanos);
+            timer.endFrame(startTime);
+
+            realTimes.record(System.nanoTime() - realStart);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        framecount += frames;
+        realNanos += elapsed;
+        return elapsed;
+    }
+
+    /**
+     * Runs the game until a given amount of virtual time has passed
+     *
+     * @param virtualNanos the amount of virtual time to simulate
+     * @return the actual time taken, in nanoseconds
+     */
+    public long runFor(long virtualNanos) {
+        return runFrames((virtualNanos + frameNanos - 1) / frameNanos);
+    }
+
+    /**
+     * @return The virtual clock the game runs on
+     */
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return The total number of frames run so far
+     */
+    public long getFrameCount() {
+        return framecount;
+    }
+
+    /**
+     * @return The total virtual time simulated so far, in nanoseconds
+     */
+    public long getVirtualTime() {
+        return clock.nanoTime();
+    }
+
+    /**
+     * @return The total actual time spent running frames, in nanoseconds
+     */
+    public long getRealTime() {
+        return realNanos;
+    }
+
+    /**
+     * @return The number of frames run per actual second
+     */
+    public double getFramesPerSecond() {
+        return realNanos == 0 ? 0 : framecount * 1000000000.0 / realNanos;
+    }
+
+    /**
+     * @return The histogram of the actual time each frame took. A frame
+     * counts as a stutter when it takes longer than its virtual frame time.
+     */
+    public FrameHistogram getRealTimes() {
+        return realTimes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d frames\t%.2fs simulated\t%.2fs real\t%.1f fps]", framecount, getVirtualTime() / 1000000000.0, realNanos / 1000000000.0, getFramesPerSecond());
+    }
+}
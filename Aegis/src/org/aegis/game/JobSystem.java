@@ -0,0 +1,362 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * RuntimeSystem which updates other RuntimeSystems in parallel on a
+ * work-stealing ForkJoinPool. Every update a dependency graph is built from
+ * what each ParallelSystem reads and writes: a system waits for every system
+ * registered before it which writes to something it uses, or uses something
+ * it writes to, and otherwise runs as soon as a worker is free. Systems which
+ * don't declare anything are treated as using everything, so they always run
+ * on their own. Each system's update is timed separately.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class JobSystem implements RuntimeSystem {
+
+    // THE POOL JOBS ARE RUN ON
+    private final ForkJoinPool pool;
+
+    // ALL OF THE REGISTERED JOBS, IN ORDER
+    private final List<Job> jobs;
+
+    // STATISTICS
+    private volatile long lastFrameNanos;
+
+    /**
+     * Constructor for a job system using one worker per available processor
+     */
+    public JobSystem() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * Constructor for a job system using a custom pool
+     *
+     * @param pool the pool to run jobs on
+     */
+    public JobSystem(ForkJoinPool pool) {
+        this.pool = pool;
+        this.jobs = new ArrayList();
+    }
+
+    /**
+     * Adds a system to be updated every frame. Systems which depend on each
+     * other run in the order they were registered.
+     *
+     * @param system the system to add
+     * @return the job keeping track of the system's timing
+     */
+    public synchronized Job register(RuntimeSystem system) {
+        Job job = new Job(system);
+        jobs.add(job);
+        return job;
+    }
+
+    /**
+     * Removes a system from the job system
+     *
+     * @param system the system to remove
+     * @return true if the system was registered
+     */
+    public synchronized boolean unregister(RuntimeSystem system) {
+        for (int i = 0; i < jobs.size(); i++) {
+            if (jobs.get(i).system == system) {
+                jobs.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the job for a registered system
+     *
+     * @param system the system to look up
+     * @return the system's job, or null if it isn't registered
+     */
+    public synchronized Job get(RuntimeSystem system) {
+        for (Job job : jobs) {
+            if (job.system == system) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of registered systems
+     */
+    public synchronized int size() {
+        return jobs.size();
+    }
+
+    /**
+     * @return The time taken by the last update, from the first job starting
+     * to the last one finishing, in nanoseconds
+     */
+    public long getLastFrameTime() {
+        return lastFrameNanos;
+    }
+
+    /**
+     * Updates every registered system, running independent ones in parallel,
+     * and returns once they have all finished. If any system throws, the
+     * first exception is rethrown here after the others have finished.
+     */
+    @Override
+    public synchronized void update() {
+        int count = jobs.size();
+        if (count == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+
+        // BUILD THE DEPENDENCY GRAPH
+        Frame frame = new Frame(count);
+        for (int j = 0; j < count; j++) {
+            Job later = jobs.get(j);
+            later.successors.clear();
+            later.pending = 0;
+            for (int i = 0; i < j; i++) {
+                Job earlier = jobs.get(i);
+                if (conflicts(earlier.system, later.system)) {
+                    earlier.successors.add(later);
+                    later.pending++;
+                }
+            }
+        }
+
+        // FIND EVERYTHING WHICH DOESN'T DEPEND ON ANYTHING BEFORE STARTING ANY
+        // OF IT, SINCE RUNNING JOBS COUNT DOWN THE PENDING COUNTS OF OTHERS
+        List<Job> roots = new ArrayList();
+        for (Job job : jobs) {
+            job.dependencies = job.pending;
+            if (job.pending == 0) {
+                roots.add(job);
+            }
+        }
+
+        // START THOSE, THE REST GET STARTED AS THEIR DEPENDENCIES FINISH
+        for (Job job : roots) {
+            pool.execute(new JobTask(job, frame));
+        }
+
+        // WAIT FOR EVERYTHING TO FINISH
+        boolean interrupted = false;
+        while (true) {
+            try {
+                frame.done.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        lastFrameNanos = System.nanoTime() - start;
+
+        if (frame.failure != null) {
+            if (frame.failure instanceof RuntimeException) {
+                throw (RuntimeException) frame.failure;
+            } else if (frame.failure instanceof Error) {
+                throw (Error) frame.failure;
+            }
+            throw new RuntimeException(frame.failure);
+        }
+    }
+
+    /**
+     * Checks whether two systems can't be updated at the same time
+     *
+     * @param a the first system
+     * @param b the second system
+     * @return true if either writes to something the other uses
+     */
+    private static boolean conflicts(RuntimeSystem a, RuntimeSystem b) {
+        if (!(a instanceof ParallelSystem) || !(b instanceof ParallelSystem)) {
+            return true;
+        }
+        ParallelSystem pa = (ParallelSystem) a;
+        ParallelSystem pb = (ParallelSystem) b;
+        return overlaps(pa.getWrites(), pb.getWrites())
+                || overlaps(pa.getWrites(), pb.getReads())
+                || overlaps(pa.getReads(), pb.getWrites());
+    }
+
+    /**
+     * Checks whether two arrays share any element
+     *
+     * @param a the first array
+     * @param b the second array
+     * @return true if any element appears in both arrays
+     */
+    private static boolean overlaps(Object[] a, Object[] b) {
+        for (Object x : a) {
+            for (Object y : b) {
+                if (x == y || x.equals(y)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Timing information and dependencies for a single system
+     */
+    public static class Job {
+
+        // THE SYSTEM TO UPDATE
+        private final RuntimeSystem system;
+
+        // JOBS WAITING ON THIS ONE, AND THE NUMBER OF JOBS THIS ONE IS STILL WAITING ON
+        private final List<Job> successors;
+        private int pending;
+        private volatile int dependencies;
+
+        // STATISTICS
+        private volatile long lastNanos;
+        private volatile long totalNanos;
+        private volatile long runs;
+
+        /**
+         * Constructor
+         *
+         * @param system the system to update
+         */
+        private Job(RuntimeSystem system) {
+            this.system = system;
+            this.successors = new ArrayList();
+        }
+
+        /**
+         * @return The system being updated
+         */
+        public RuntimeSystem getSystem() {
+            return system;
+        }
+
+        /**
+         * @return The number of systems this one had to wait for in the last
+         * update
+         */
+        public int getDependencies() {
+            return dependencies;
+        }
+
+        /**
+         * @return The time the system's last update took, in nanoseconds
+         */
+        public long getLastTime() {
+            return lastNanos;
+        }
+
+        /**
+         * @return The average time the system's updates take, in nanoseconds
+         */
+        public double getAverageTime() {
+            long n = runs;
+            return n == 0 ? 0 : (double) totalNanos / n;
+        }
+
+        /**
+         * @return The number of times the system has been updated
+         */
+        public long getRuns() {
+            return runs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s\t%.3fms\tavg %.3fms\t%d deps]", system.getClass().getSimpleName(), lastNanos / 1000000.0, getAverageTime() / 1000000, dependencies);
+        }
+    }
+
+    /**
+     * Shared state of a single update
+     */
+    private static class Frame {
+
+        private final CountDownLatch done;
+        private volatile Throwable failure;
+
+        private Frame(int jobs) {
+            this.done = new CountDownLatch(jobs);
+        }
+    }
+
+    /**
+     * Task which updates a single system and then starts any jobs which were
+     * only waiting on it
+     */
+    private static class JobTask extends RecursiveAction {
+
+        private final Job job;
+        private final Frame frame;
+
+        private JobTask(Job job, Frame frame) {
+            this.job = job;
+            this.frame = frame;
+        }
+
+        @Override
+        protected void compute() {
+            long start = System.nanoTime();
+            try {
+                job.system.update();
+            } catch (Throwable t) {
+                if (frame.failure == null) {
+                    frame.failure = t;
+                }
+            } finally {
+                long nanos = System.nanoTime() - start;
+                job.lastNanos = nanos;
+                job.totalNanos += nanos;
+                job.runs++;
+
+                // RELEASE EVERYTHING WAITING ON THIS JOB, EVEN IF IT FAILED
+                for (Job next : job.successors) {
+                    boolean ready;
+                    synchronized (next) {
+                        ready = --next.pending == 0;
+                    }
+                    if (ready) {
+                        new JobTask(next, frame).fork();
+                    }
+                }
+                frame.done.countDown();
+            }
+        }
+    }
+}
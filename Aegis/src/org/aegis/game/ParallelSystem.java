@@ -0,0 +1,47 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+/**
+ * Interface for RuntimeSystems which can be updated in parallel with others by
+ * a JobSystem. Each system declares what it reads from and writes to, usually
+ * other systems or shared data objects, and two systems only run at the same
+ * time when neither writes to something the other uses.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public interface ParallelSystem extends RuntimeSystem {
+
+    /**
+     * @return everything the system reads from during update(), which should
+     * not be null
+     */
+    public abstract Object[] getReads();
+
+    /**
+     * @return everything the system writes to during update(), which should
+     * not be null
+     */
+    public abstract Object[] getWrites();
+}
@@ -0,0 +1,358 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Ordered registry of the RuntimeSystems making up a game, grouped into named
+ * phases. Every frame each phase is updated in turn, and within a phase the
+ * systems run in the order they were registered. Systems are looked up by
+ * name, can be enabled or disabled at runtime and keep track of their own
+ * costs.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class SystemRegistry {
+
+    /**
+     * The phases of a frame, in the order they are updated
+     */
+    public static enum Phase {
+
+        PRE_INPUT, INPUT, LOGIC, SYSTEMS, LATE_UPDATE, RENDER
+    }
+
+    // THE SYSTEMS IN EACH PHASE, IN ORDER
+    private final List<Entry>[] phases;
+
+    // EVERY SYSTEM BY NAME
+    private final Map<String, Entry> names;
+
+    /**
+     * Constructor for an empty registry
+     */
+    public SystemRegistry() {
+        Phase[] values = Phase.values();
+        this.phases = new List[values.length];
+        for (int i = 0; i < values.length; i++) {
+            phases[i] = new CopyOnWriteArrayList();
+        }
+        this.names = new ConcurrentHashMap();
+    }
+
+    /**
+     * Adds a system to the end of a phase
+     *
+     * @param phase the phase to run the system in
+     * @param name a unique name to refer to the system by
+     * @param system the system to add
+     * @return the entry keeping track of the system
+     * @throws IllegalArgumentException if the name is already in use
+     */
+    public synchronized Entry register(Phase phase, String name, RuntimeSystem system) {
+        if (system == null) {
+            throw new IllegalArgumentException("Cannot register a null system");
+        }
+        if (names.containsKey(name)) {
+            throw new IllegalArgumentException("A system named " + name + " is already registered");
+        }
+        Entry entry = new Entry(phase, name, system);
+        names.put(name, entry);
+        phases[phase.ordinal()].add(entry);
+        return entry;
+    }
+
+    /**
+     * Sets the system with a given name, replacing it in place if it already
+     * exists in the same phase and registering it otherwise. A replaced system
+     * keeps its position and enabled state, but its costs are reset.
+     *
+     * @param phase the phase to run the system in
+     * @param name a unique name to refer to the system by
+     * @param system the system to set
+     * @return the entry keeping track of the system
+     */
+    public synchronized Entry put(Phase phase, String name, RuntimeSystem system) {
+        Entry old = names.get(name);
+        if (old == null) {
+            return register(phase, name, system);
+        }
+        if (system == null) {
+            throw new IllegalArgumentException("Cannot register a null system");
+        }
+        if (old.phase != phase) {
+            unregister(name);
+            return register(phase, name, system);
+        }
+
+        Entry entry = new Entry(phase, name, system);
+        entry.enabled = old.enabled;
+        List<Entry> list = phases[phase.ordinal()];
+        list.set(list.indexOf(old), entry);
+        names.put(name, entry);
+        return entry;
+    }
+
+    /**
+     * Removes a system from the registry
+     *
+     * @param name the name of the system to remove
+     * @return the system removed, or null if no system had that name
+     */
+    public synchronized RuntimeSystem unregister(String name) {
+        Entry entry = names.remove(name);
+        if (entry == null) {
+            return null;
+        }
+        phases[entry.phase.ordinal()].remove(entry);
+        return entry.system;
+    }
+
+    /**
+     * Returns the entry for a system
+     *
+     * @param name the name of the system
+     * @return the system's entry, or null if no system has that name
+     */
+    public Entry get(String name) {
+        return names.get(name);
+    }
+
+    /**
+     * Returns every system in a phase, in the order they run
+     *
+     * @param phase the phase
+     * @return the entries of the phase's systems
+     */
+    public Entry[] get(Phase phase) {
+        return phases[phase.ordinal()].toArray(new Entry[0]);
+    }
+
+    /**
+     * Enables or disables a system. Disabled systems are skipped until they
+     * are enabled again.
+     *
+     * @param name the name of the system
+     * @param enabled whether the system should run
+     * @throws IllegalArgumentException if no system has that name
+     */
+    public void setEnabled(String name, boolean enabled) {
+        Entry entry = names.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No system named " + name + " is registered");
+        }
+        entry.enabled = enabled;
+    }
+
+    /**
+     * Checks whether a system is enabled
+     *
+     * @param name the name of the system
+     * @return true if a system with that name exists and is enabled
+     */
+    public boolean isEnabled(String name) {
+        Entry entry = names.get(name);
+        return entry != null && entry.enabled;
+    }
+
+    /**
+     * @return The total number of registered systems
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Updates every enabled system in a phase, in order
+     *
+     * @param phase the phase to update
+     */
+    public void update(Phase phase) {
+        for (Entry entry : phases[phase.ordinal()]) {
+            if (entry.enabled) {
+                entry.update();
+            }
+        }
+    }
+
+    /**
+     * Resets the costs of every system
+     */
+    public void resetStatistics() {
+        for (Entry entry : names.values()) {
+            entry.resetStatistics();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[SystemRegistry]");
+        for (Phase phase : Phase.values()) {
+            for (Entry entry : phases[phase.ordinal()]) {
+                sb.append("\n\t").append(entry);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A single registered system and its costs
+     */
+    public static class Entry {
+
+        // WHERE AND WHAT THE SYSTEM IS
+        private final Phase phase;
+        private final String name;
+        private final RuntimeSystem system;
+
+        // WHETHER OR NOT THE SYSTEM RUNS
+        private volatile boolean enabled;
+
+        // STATISTICS
+        private volatile long calls;
+        private volatile long lastNanos;
+        private volatile long maxNanos;
+        private volatile long totalNanos;
+
+        /**
+         * Constructor
+         *
+         * @param phase the phase the system runs in
+         * @param name the system's name
+         * @param system the system
+         */
+        private Entry(Phase phase, String name, RuntimeSystem system) {
+            this.phase = phase;
+            this.name = name;
+            this.system = system;
+            this.enabled = true;
+        }
+
+        /**
+         * Updates the system and records how long it took
+         */
+        private void update() {
+            long start = System.nanoTime();
+            system.update();
+            long nanos = System.nanoTime() - start;
+
+            lastNanos = nanos;
+            totalNanos += nanos;
+            if (nanos > maxNanos) {
+                maxNanos = nanos;
+            }
+            calls++;
+        }
+
+        /**
+         * Resets the system's costs
+         */
+        public void resetStatistics() {
+            calls = 0;
+            lastNanos = 0;
+            maxNanos = 0;
+            totalNanos = 0;
+        }
+
+        /**
+         * @return The phase the system runs in
+         */
+        public Phase getPhase() {
+            return phase;
+        }
+
+        /**
+         * @return The system's name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The system
+         */
+        public RuntimeSystem getSystem() {
+            return system;
+        }
+
+        /**
+         * @return Whether or not the system runs
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * @param enabled whether the system should run
+         */
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        /**
+         * @return The number of times the system has been updated
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return The time the system's last update took, in nanoseconds
+         */
+        public long getLastTime() {
+            return lastNanos;
+        }
+
+        /**
+         * @return The longest time a single update took, in nanoseconds
+         */
+        public long getMaxTime() {
+            return maxNanos;
+        }
+
+        /**
+         * @return The total time spent updating the system, in nanoseconds
+         */
+        public long getTotalTime() {
+            return totalNanos;
+        }
+
+        /**
+         * @return The average time the system's updates take, in nanoseconds
+         */
+        public double getAverageTime() {
+            long n = calls;
+            return n == 0 ? 0 : (double) totalNanos / n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s %s%s\t%d calls\tlast %.3fms\tavg %.3fms\tmax %.3fms]", phase, name, enabled ? "" : " (disabled)", calls, lastNanos / 1000000.0, getAverageTime() / 1000000, maxNanos / 1000000.0);
+        }
+    }
+}
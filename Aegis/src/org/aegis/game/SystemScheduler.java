@@ -0,0 +1,398 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RuntimeSystem which runs other RuntimeSystems at their own independent
+ * rates, such as physics at 120Hz and AI at 10Hz, regardless of the game's
+ * framerate. Systems are either interleaved on the thread calling update() or
+ * given a dedicated thread of their own, and each one keeps track of how far
+ * its ticks drift from their schedule.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class SystemScheduler implements RuntimeSystem {
+
+    // DEFAULT NUMBER OF TICKS A SYSTEM CAN RUN IN A SINGLE UPDATE TO CATCH UP
+    public final static int DEFAULT_MAX_CATCH_UP = 4;
+
+    // THE CLOCK USED WHEN UPDATE() IS CALLED WITHOUT A TIME
+    private GameClock clock;
+
+    // ALL OF THE SCHEDULED SYSTEMS
+    private final List<Entry> entries;
+
+    // MAXIMUM NUMBER OF TICKS PER SYSTEM PER UPDATE, ALSO READ BY DEDICATED THREADS
+    private volatile int maxCatchUp;
+
+    /**
+     * Constructor for a scheduler running on the system clock
+     */
+    public SystemScheduler() {
+        this(GameClock.SYSTEM);
+    }
+
+    /**
+     * Constructor for a scheduler running on a given clock
+     *
+     * @param clock the clock to schedule systems with
+     */
+    public SystemScheduler(GameClock clock) {
+        this.clock = clock;
+        this.entries = new ArrayList();
+        this.maxCatchUp = DEFAULT_MAX_CATCH_UP;
+    }
+
+    /**
+     * Sets the clock used to schedule systems when update() is called without
+     * a time. Systems on dedicated threads always use the system clock.
+     *
+     * @param clock the new clock
+     */
+    public void setClock(GameClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the maximum number of ticks a single system can run in one update
+     * in order to catch up. Ticks beyond this are dropped and counted. Systems
+     * on their own thread drop ticks once they fall this many ticks behind.
+     *
+     * @param maxCatchUp the maximum number of ticks per update
+     */
+    public void setMaxCatchUp(int maxCatchUp) {
+        if (maxCatchUp <= 0) {
+            throw new IllegalArgumentException("At least one tick must be allowed per update");
+        }
+        this.maxCatchUp = maxCatchUp;
+    }
+
+    /**
+     * Adds a system which is interleaved with the others on the thread calling
+     * update()
+     *
+     * @param system the system to run
+     * @param rate the number of times to run it per second
+     * @return the entry keeping track of the system's schedule
+     */
+    public synchronized Entry register(RuntimeSystem system, float rate) {
+        Entry entry = new Entry(this, system, rate, false);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Adds a system which runs on a dedicated thread of its own. The thread is
+     * started right away and runs on the system clock until the system is
+     * removed or stop() is called.
+     *
+     * @param system the system to run
+     * @param rate the number of times to run it per second
+     * @return the entry keeping track of the system's schedule
+     */
+    public synchronized Entry registerThreaded(RuntimeSystem system, float rate) {
+        Entry entry = new Entry(this, system, rate, true);
+        entries.add(entry);
+        entry.startThread();
+        return entry;
+    }
+
+    /**
+     * Removes a system from the scheduler, stopping its thread if it has one
+     *
+     * @param system the system to remove
+     * @return true if the system was scheduled
+     */
+    public synchronized boolean unregister(RuntimeSystem system) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.system == system) {
+                entry.stopThread();
+                entries.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops every dedicated system thread
+     */
+    public synchronized void stop() {
+        for (Entry entry : entries) {
+            entry.stopThread();
+        }
+    }
+
+    /**
+     * Returns the entry for a scheduled system
+     *
+     * @param system the system to look up
+     * @return the system's entry, or null if it isn't scheduled
+     */
+    public synchronized Entry get(RuntimeSystem system) {
+        for (Entry entry : entries) {
+            if (entry.system == system) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of scheduled systems
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Runs every interleaved system which is due, using the scheduler's clock
+     */
+    @Override
+    public void update() {
+        update(clock.nanoTime());
+    }
+
+    /**
+     * Runs every interleaved system which is due at a given time, in the order
+     * they were registered
+     *
+     * @param now the current time, in nanoseconds
+     */
+    public synchronized void update(long now) {
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (!entry.threaded) {
+                entry.runDue(now, maxCatchUp);
+            }
+        }
+    }
+
+    /**
+     * Scheduling information and drift statistics for a single system
+     */
+    public static class Entry implements Runnable {
+
+        // THE SYSTEM AND HOW TO RUN IT
+        private final SystemScheduler scheduler;
+        private final RuntimeSystem system;
+        private final boolean threaded;
+        private volatile float rate;
+        private volatile long period;
+
+        // SCHEDULE
+        private long due;
+        private boolean started;
+        private Thread thread;
+        private volatile boolean running;
+
+        // STATISTICS
+        private volatile long ticks;
+        private volatile long droppedTicks;
+        private volatile long lastDrift;
+        private volatile long maxDrift;
+        private volatile long totalDrift;
+
+        /**
+         * Constructor
+         *
+         * @param scheduler the scheduler the system belongs to
+         * @param system the system to run
+         * @param rate the number of times to run it per second
+         * @param threaded true if the system gets its own thread
+         */
+        private Entry(SystemScheduler scheduler, RuntimeSystem system, float rate, boolean threaded) {
+            this.scheduler = scheduler;
+            this.system = system;
+            this.threaded = threaded;
+            setRate(rate);
+        }
+
+        /**
+         * Changes the number of times the system runs per second
+         *
+         * @param rate the new rate
+         */
+        public final void setRate(float rate) {
+            if (rate <= 0.0f) {
+                throw new IllegalArgumentException("Rate must be positive and non-zero");
+            }
+            this.rate = rate;
+            this.period = (long) (1000000000 / rate);
+        }
+
+        /**
+         * Runs the system as many times as it is due, up to a limit
+         *
+         * @param now the current time
+         * @param maxCatchUp the maximum number of times to run the system
+         */
+        private void runDue(long now, int maxCatchUp) {
+            if (!started) {
+                due = now;
+                started = true;
+            }
+
+            int count = 0;
+            while (due - now <= 0 && count < maxCatchUp) {
+                tick(now - due);
+                due += period;
+                count++;
+            }
+
+            // DROP ANY TICKS WE CAN'T CATCH UP ON
+            if (due - now <= 0) {
+                long behind = (now - due) / period + 1;
+                droppedTicks += behind;
+                due += behind * period;
+            }
+        }
+
+        /**
+         * Runs the system once and records how late it was
+         *
+         * @param drift how long after its scheduled time the tick started
+         */
+        private void tick(long drift) {
+            system.update();
+            lastDrift = drift;
+            if (drift > maxDrift) {
+                maxDrift = drift;
+            }
+            totalDrift += drift;
+            ticks++;
+        }
+
+        /**
+         * Starts the system's dedicated thread
+         */
+        private void startThread() {
+            running = true;
+            thread = new Thread(this, "AEGIS " + system.getClass().getSimpleName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Stops the system's dedicated thread after its current tick, if it
+         * has one
+         */
+        private void stopThread() {
+            running = false;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        /**
+         * Main loop for systems running on a dedicated thread
+         */
+        @Override
+        public void run() {
+            FramePacer pacer = new FramePacer();
+            long next = System.nanoTime();
+            while (running) {
+                pacer.waitUntil(next);
+                long now = System.nanoTime();
+                tick(now - next);
+                next += period;
+
+                // DROP ANY TICKS WE CAN'T CATCH UP ON
+                if (now - next > scheduler.maxCatchUp * period) {
+                    long behind = (now - next) / period;
+                    droppedTicks += behind;
+                    next += behind * period;
+                }
+            }
+        }
+
+        /**
+         * @return The system being scheduled
+         */
+        public RuntimeSystem getSystem() {
+            return system;
+        }
+
+        /**
+         * @return The number of times the system runs per second
+         */
+        public float getRate() {
+            return rate;
+        }
+
+        /**
+         * @return True if the system runs on a dedicated thread
+         */
+        public boolean isThreaded() {
+            return threaded;
+        }
+
+        /**
+         * @return The number of times the system has run
+         */
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * @return The number of ticks which were dropped because the system
+         * fell too far behind
+         */
+        public long getDroppedTicks() {
+            return droppedTicks;
+        }
+
+        /**
+         * @return How late the last tick started, in nanoseconds
+         */
+        public long getLastDrift() {
+            return lastDrift;
+        }
+
+        /**
+         * @return The latest any tick has started, in nanoseconds
+         */
+        public long getMaxDrift() {
+            return maxDrift;
+        }
+
+        /**
+         * @return The average time ticks started late, in nanoseconds
+         */
+        public double getAverageDrift() {
+            long n = ticks;
+            return n == 0 ? 0 : (double) totalDrift / n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s @ %.1fHz\t%d ticks\tdrift %.3f/%.3fms\t%d dropped]",
+                    system.getClass().getSimpleName(), rate, ticks, getAverageDrift() / 1000000, maxDrift / 1000000.0, droppedTicks);
+        }
+    }
+}
@@ -23,6 +23,8 @@
  */
 package org.aegis.game;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Decorative class meant to run a Runnable object at a specified rate and
  * maintain performance statistics
@@ -37,28 +39,67 @@ public class TimeKeeper implements java.lang.Runnable {
     public final static float FRAMERATE_HIGH = 60.0f;
     public final static float FRAMERATE_ULTRA = 120.0f;
 
+    // DEFAULT NUMBER OF CATCH-UP STEPS ALLOWED PER FRAME WHEN USING A FIXED TIMESTEP
+    public final static int DEFAULT_MAX_STEPS = 5;
+
+    // DEFAULT OVERLOAD LIMITS
+    public final static int DEFAULT_MAX_SKIPS = 5;
+    public final static int DEFAULT_RENDER_DIVISOR = 2;
+
     // SYNCHRONIZED OBJECT
     private Runnable child;
 
-    // NANO-TIME WAIT
-    private boolean waitNanos;
+    // OBJECT USED TO WAIT BETWEEN FRAMES
+    private FramePacer pacer;
 
-    // TARGETS
-    private float targetFramerate;
-    private int targetNanos;    // NANOSECONDS TO WAIT
-    private boolean unlockedFramerate;
+    // SOURCE OF TIME FOR ALL FRAME TIMINGS
+    private GameClock clock;
 
-    // SEMAPHORE FOR PAUSING
-    private int sem_pause = 0;
+    // TARGETS
+    private volatile float targetFramerate;
+    private volatile int targetNanos;    // NANOSECONDS TO WAIT
+    private volatile boolean unlockedFramerate;
+
+    // FIXED TIMESTEP
+    private volatile boolean fixedTimestep;
+    private volatile float stepRate;
+    private volatile long stepNanos;     // NANOSECONDS PER SIMULATION STEP
+    private volatile int maxSteps;       // MAXIMUM NUMBER OF STEPS TO RUN IN A SINGLE FRAME
+    private long accumulator;   // SIMULATION TIME NOT YET CONSUMED BY A STEP
+    private long lastFrameStart;
+    private boolean firstStep;
+    private volatile float interpolation = 1.0f;
+
+    // OVERLOAD HANDLING
+    private volatile OverloadPolicy overloadPolicy = OverloadPolicy.NONE;
+    private volatile int maxSkips = DEFAULT_MAX_SKIPS;     // MAXIMUM NUMBER OF CONSECUTIVE FRAMES WITHOUT RENDERING
+    private volatile int renderDivisor = DEFAULT_RENDER_DIVISOR;   // RENDER ONE IN THIS MANY FRAMES WHILE OVERLOADED
+    private long frameSchedule;     // WHEN THE NEXT FRAME SHOULD START
+    private boolean scheduled;
+    private int consecutiveSkips;
+
+    // PAUSE CONTROL
+    private final AtomicInteger pauseRequests = new AtomicInteger();    // NUMBER OF OUTSTANDING PAUSE REQUESTS
+    private final AtomicInteger stepRequests = new AtomicInteger();     // FRAMES TO RUN WHILE PAUSED
+    private final Object pauseLock = new Object();  // WAITED ON WHILE PAUSED, SO THAT WAKING UP NEVER LEAVES A PARK PERMIT FOR THE PACER
+    private volatile Thread thread;
 
     // STATISTICS
-    private float performance;  // STORES THE PERFORMANCE RATING AS A PERCENTAGE BETWEEN TARGET AND ACTUAL FRAME RATES
-    private long lastRuntime;   // USED TO STORE THE TIME BETWEEN TWO SUBSEQUENT CALLS IN MILLIS
-    private long averageRuntime;   // USED TO STORE A RUNNING AVERAGE OF THE RUNTIME IN MILLIS
-    private long framenumber = 1;
+    private volatile float performance;  // STORES THE PERFORMANCE RATING AS A PERCENTAGE BETWEEN TARGET AND ACTUAL FRAME RATES
+    private volatile long lastRuntime;   // USED TO STORE THE TIME BETWEEN TWO SUBSEQUENT CALLS IN NANOS
+    private volatile long lastWorkTime;  // TIME THE PREVIOUS FRAME SPENT RUNNING THE CHILD, NOT COUNTING ANY WAIT
+    private volatile long averageRuntime;   // USED TO STORE A RUNNING AVERAGE OF THE RUNTIME IN NANOS
+    private volatile long framenumber = 1;
+    private final FrameHistogram histogram;  // DISTRIBUTION OF ALL THE FRAME TIMES
+    private volatile long stepnumber = 0;
+    private volatile long droppedSteps = 0;
+    private volatile long skippedFrames = 0;     // FRAMES SKIPPED FOR BEING BEHIND SCHEDULE
+    private volatile long reducedFrames = 0;     // FRAMES SKIPPED TO LOWER THE RENDER RATE
+    private volatile long forcedFrames = 0;      // FRAMES RENDERED ONLY BECAUSE TOO MANY WERE SKIPPED IN A ROW
+    private volatile long resyncs = 0;           // TIMES THE SCHEDULE WAS RESET AFTER FALLING TOO FAR BEHIND
 
     // SELF-EXPANATORY
-    private boolean isRunning;
+    private volatile boolean isRunning;
 
     /**
      * Simple constructor set to FRAMERATE_LOW
@@ -88,7 +129,9 @@ public class TimeKeeper implements java.lang.Runnable {
         this.targetNanos = (int) (1000000000 / targetFramerate);
         this.unlockedFramerate = false;
         this.isRunning = false;
-        this.waitNanos = true;
+        this.pacer = new FramePacer();
+        this.clock = GameClock.SYSTEM;
+        this.histogram = new FrameHistogram(2L * targetNanos);
     }
     // GETTERS
     // - getTargetFramerate
@@ -115,6 +158,33 @@ public class TimeKeeper implements java.lang.Runnable {
         return child;
     }
 
+    /**
+     * Sets the clock all frame timings are taken from. Note that the wait
+     * between frames is always measured on the system's clock, so a virtual
+     * clock is meant to be used with a HeadlessRunner rather than start().
+     *
+     * @param clock the new clock
+     */
+    public void setClock(GameClock clock) {
+        this.clock = clock;
+        this.firstStep = true;
+    }
+
+    /**
+     * @return The clock all frame timings are taken from
+     */
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return The pacer used to wait between frames, which also holds the
+     * frame timing jitter statistics
+     */
+    public FramePacer getPacer() {
+        return pacer;
+    }
+
     // STATISTICS
     // getPerformance
     // getLastRuntime
@@ -134,6 +204,14 @@ public class TimeKeeper implements java.lang.Runnable {
         return lastRuntime;
     }
 
+    /**
+     * @return The time the previous frame spent running the synchronized
+     * object, leaving out any time spent waiting for the next frame
+     */
+    public long getLastWorkTime() {
+        return lastWorkTime;
+    }
+
     /**
      * @return The average runtime
      */
@@ -146,7 +224,35 @@ public class TimeKeeper implements java.lang.Runnable {
      * runtime
      */
     public float getAverageFramerate() {
-        return (float) 1000 / averageRuntime;
+        return 1000000000.0f / averageRuntime;
+    }
+
+    /**
+     * Returns the histogram every frame time is recorded into. By default a
+     * frame counts as a stutter when it takes more than twice the target
+     * frame time.
+     *
+     * @return the frame time histogram
+     */
+    public FrameHistogram getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Takes a snapshot of the recent frame times, which can be used to find
+     * percentiles and stutters. This can be safely called from any thread.
+     *
+     * @return a snapshot of the frame times in the histogram's sliding window
+     */
+    public FrameHistogram.Snapshot getFrameTimes() {
+        return histogram.snapshot();
+    }
+
+    /**
+     * @return The target time per frame in nanoseconds
+     */
+    public long getTargetNanos() {
+        return targetNanos;
     }
 
     /**
@@ -156,9 +262,69 @@ public class TimeKeeper implements java.lang.Runnable {
         return framenumber;
     }
 
+    /**
+     * @return The total number of fixed simulation steps that have been run
+     */
+    public long getStepNumber() {
+        return stepnumber;
+    }
+
+    /**
+     * @return The total number of fixed simulation steps that were discarded
+     * because a frame hit its catch-up limit
+     */
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }
+
+    /**
+     * @return The total number of frames which skipped rendering to catch up
+     * with the schedule
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * @return The total number of frames which skipped rendering to lower the
+     * render rate while overloaded
+     */
+    public long getReducedFrames() {
+        return reducedFrames;
+    }
+
+    /**
+     * @return The total number of frames which were rendered only because the
+     * limit of consecutive skipped frames was reached
+     */
+    public long getForcedFrames() {
+        return forcedFrames;
+    }
+
+    /**
+     * @return The total number of times the schedule was reset because the
+     * timer fell too far behind to catch up
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Returns the interpolation factor between the previous and the current
+     * simulation step, which RenderItems can use to smooth movement when
+     * running on a fixed timestep. This is always 1.0 when using a variable
+     * timestep.
+     *
+     * @return the interpolation factor, ranging from 0.0 to 1.0
+     */
+    public float getInterpolation() {
+        return interpolation;
+    }
+
     // MAIN USAGE METHODS
     // - requestPause
     // - releasePause
+    // - stepFrames
     // - start
     // - end
     // - lockFramerate
@@ -166,13 +332,12 @@ public class TimeKeeper implements java.lang.Runnable {
     // - useNanoTimeout
     // - isPaused
     // - isRunning
-    // TODO rewrite requestPause and requestUnpause methods
     /**
      * Method to start the timer running
      */
     public void start() {
         isRunning = true;
-        Thread thread = new Thread(this);
+        thread = new Thread(this);
         thread.setPriority(Thread.MAX_PRIORITY);
         thread.start();
     }
@@ -182,6 +347,94 @@ public class TimeKeeper implements java.lang.Runnable {
      */
     public void endAfterFrame() {
         isRunning = false;
+        wakeUp();
+    }
+
+    /**
+     * Requests the timer to pause after the current frame. The timer stays
+     * paused until every request has been released, so multiple systems can
+     * pause it independently.
+     */
+    public void requestPause() {
+        if (pauseRequests.incrementAndGet() == 1) {
+            stepRequests.set(0);
+        }
+    }
+
+    /**
+     * Releases a previous pause request, resuming the timer once there are
+     * none left. Releasing more requests than were made has no effect.
+     */
+    public void releasePause() {
+        int requests;
+        do {
+            requests = pauseRequests.get();
+            if (requests == 0) {
+                return;
+            }
+        } while (!pauseRequests.compareAndSet(requests, requests - 1));
+
+        if (requests == 1) {
+            // FRAMES REQUESTED DURING THE PAUSE DON'T CARRY OVER TO THE NEXT ONE
+            stepRequests.set(0);
+            wakeUp();
+        }
+    }
+
+    /**
+     * Runs a number of frames while the timer is paused, such as for
+     * debugging. This has no effect while the timer is running normally, and
+     * any frames which haven't run yet are forgotten when the pause ends.
+     *
+     * @param frames the number of frames to run
+     */
+    public void stepFrames(int frames) {
+        if (frames <= 0) {
+            throw new IllegalArgumentException("Must step at least one frame");
+        }
+        if (!isPaused()) {
+            return;
+        }
+        stepRequests.addAndGet(frames);
+        wakeUp();
+    }
+
+    /**
+     * Wakes up the timer thread if it's waiting while paused
+     */
+    private void wakeUp() {
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the timer is resumed, ended, or asked to step a frame
+     */
+    private void awaitResume() {
+        synchronized (pauseLock) {
+            while (isRunning && pauseRequests.get() > 0 && stepRequests.get() == 0) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException ex) {
+                    // ONLY THE CONDITIONS ABOVE END A PAUSE
+                }
+            }
+        }
+    }
+
+    /**
+     * @return True if there are any pause requests on the timer
+     */
+    public boolean isPaused() {
+        return pauseRequests.get() > 0;
+    }
+
+    /**
+     * @return True if the timer is running, paused or not
+     */
+    public boolean isRunning() {
+        return isRunning;
     }
 
     /**
@@ -197,6 +450,7 @@ public class TimeKeeper implements java.lang.Runnable {
         this.targetFramerate = newFramerate;
         this.targetNanos = (int) (1000000000 / newFramerate);
         this.unlockedFramerate = false;
+        this.histogram.setStutterThreshold(2L * targetNanos);
     }
 
     /**
@@ -209,94 +463,385 @@ public class TimeKeeper implements java.lang.Runnable {
         this.targetFramerate = framerate;
         this.targetNanos = (int) (1000000000 / targetFramerate);
         this.unlockedFramerate = true;
+        this.histogram.setStutterThreshold(2L * targetNanos);
     }
 
     /**
      * Use this method to wait for a slight moment after each frame using a
      * CPU-heavy loop. This may provide better framerate precision but at the
-     * cost of slightly higher CPU usage
+     * cost of slightly higher CPU usage. This replaces the default adaptive
+     * pacing and is mostly kept for comparison purposes.
      *
      * @param on true in order to wait for nanosecond precision, false otherwise
      */
     public void useNanoTimeout(boolean on) {
-        this.waitNanos = on;
+        pacer.setMode(on ? FramePacer.Mode.SLEEP_YIELD : FramePacer.Mode.SLEEP);
+    }
+
+    /**
+     * Sets the strategy used to wait between frames. By default this is
+     * FramePacer.Mode.ADAPTIVE.
+     *
+     * @param mode the waiting strategy to use
+     */
+    public void setPacingMode(FramePacer.Mode mode) {
+        pacer.setMode(mode);
+    }
+
+    /**
+     * Switches the timer to a fixed timestep, where the child's simulation is
+     * stepped zero or more times per frame at a constant rate and rendered
+     * once per frame. The child must be a FixedStepRunnable.
+     *
+     * @param stepRate the number of simulation steps per second
+     * @param maxSteps the maximum number of catch-up steps to run in a single
+     * frame. Any additional time is dropped, slowing down the simulation
+     * instead of stalling the frame.
+     */
+    public void useFixedTimestep(float stepRate, int maxSteps) {
+        if (!(child instanceof FixedStepRunnable)) {
+            throw new IllegalStateException("The synchronized object does not support fixed timesteps");
+        }
+        if (stepRate <= 0.0f) {
+            throw new IllegalArgumentException("Step rate must be positive and non-zero");
+        }
+        if (maxSteps <= 0) {
+            throw new IllegalArgumentException("At least one step must be allowed per frame");
+        }
+
+        this.stepRate = stepRate;
+        this.stepNanos = (long) (1000000000 / stepRate);
+        this.maxSteps = maxSteps;
+        this.accumulator = 0;
+        this.firstStep = true;
+        this.fixedTimestep = true;
+    }
+
+    /**
+     * Switches the timer to a fixed timestep using the default maximum number
+     * of catch-up steps
+     *
+     * @param stepRate the number of simulation steps per second
+     */
+    public void useFixedTimestep(float stepRate) {
+        useFixedTimestep(stepRate, DEFAULT_MAX_STEPS);
+    }
+
+    /**
+     * Switches the timer back to a variable timestep, where the child is run
+     * exactly once per frame. This is the default.
+     */
+    public void useVariableTimestep() {
+        this.fixedTimestep = false;
+        this.interpolation = 1.0f;
+    }
+
+    /**
+     * @return True if the simulation is running on a fixed timestep
+     */
+    public boolean isFixedTimestep() {
+        return fixedTimestep;
+    }
+
+    /**
+     * @return The number of fixed simulation steps per second
+     */
+    public float getStepRate() {
+        return stepRate;
+    }
+
+    /**
+     * Sets what the timer does when frames take longer than their budget. By
+     * default this is OverloadPolicy.NONE, where late frames simply push back
+     * every following frame and the game runs in slow motion. Any other policy
+     * requires the child to be a FixedStepRunnable, so that the simulation can
+     * run without rendering.
+     *
+     * @param policy the new overload policy
+     */
+    public void setOverloadPolicy(OverloadPolicy policy) {
+        if (policy != OverloadPolicy.NONE && !(child instanceof FixedStepRunnable)) {
+            throw new IllegalStateException("The synchronized object does not support skipping frames");
+        }
+        this.overloadPolicy = policy;
+        this.scheduled = false;
+    }
+
+    /**
+     * @return The policy used when frames take longer than their budget
+     */
+    public OverloadPolicy getOverloadPolicy() {
+        return overloadPolicy;
+    }
+
+    /**
+     * Sets the maximum number of consecutive frames which can skip rendering.
+     * Once reached, the next frame is always rendered.
+     *
+     * @param maxSkips the maximum number of consecutive skipped frames
+     */
+    public void setMaxSkippedFrames(int maxSkips) {
+        if (maxSkips < 0) {
+            throw new IllegalArgumentException("The number of skipped frames cannot be negative");
+        }
+        this.maxSkips = maxSkips;
+    }
+
+    /**
+     * @return The maximum number of consecutive frames which can skip
+     * rendering
+     */
+    public int getMaxSkippedFrames() {
+        return maxSkips;
+    }
+
+    /**
+     * Sets how much the render rate is lowered when using
+     * OverloadPolicy.REDUCE_RENDER_RATE
+     *
+     * @param divisor render one in this many frames while overloaded
+     */
+    public void setRenderDivisor(int divisor) {
+        if (divisor <= 0) {
+            throw new IllegalArgumentException("Divisor must be positive and non-zero");
+        }
+        this.renderDivisor = divisor;
+    }
+
+    /**
+     * @return The number of frames per rendered frame while overloaded
+     */
+    public int getRenderDivisor() {
+        return renderDivisor;
     }
 
-    // TODO rerwite pause shit and isPaused()
     // OVERWRITTEN METHODS
     // - run()
     // - toString()
     /**
      * Main method which serves as a wrapper for runSynced() and simply
-     * initializes the initial values and provides an unsynchronized point to
-     * suspend on pause statements
+     * initializes the initial values and provides a point to suspend on pause
+     * requests. Checking for a pause is a single atomic read, and the thread
+     * only waits while actually paused.
      */
     @Override
     public final void run() {
-        // SET SOME INITIAL VALUES IN CASE OF READ
-        lastRuntime = targetNanos;
-        averageRuntime = lastRuntime;
-        performance = 1.0f;
+        prepare();
 
         // AND RUN MAIN
         while (isRunning) {
-            // SUSPEND AT THIS CALL IF PAUSED
+            // SUSPEND AT THIS CALL IF PAUSED, UNLESS A FRAME WAS REQUESTED
+            if (pauseRequests.get() > 0 && !takeStepRequest()) {
+                awaitResume();
+
+                // DON'T TRY TO MAKE UP FOR THE TIME SPENT PAUSED
+                scheduled = false;
+                firstStep = true;
+                continue;
+            }
             runSynced();
         }
     }
 
-    private synchronized void runSynced() {
-        // WAIT UNTIL SEM_PAUSE IS 0 - THAT IS, THERE ARE NO PAUSE REQUESTS ON THIS THREAD
-        while (sem_pause > 0) {
-            try {
-                wait();
-            } catch (InterruptedException ex) {
-
+    /**
+     * Takes a single frame from the outstanding step requests
+     *
+     * @return true if there was a step request to take
+     */
+    private boolean takeStepRequest() {
+        int requests;
+        do {
+            requests = stepRequests.get();
+            if (requests == 0) {
+                return false;
             }
+        } while (!stepRequests.compareAndSet(requests, requests - 1));
+        return true;
+    }
+
+    private void runSynced() {
+        // RUN THE FRAME
+        long startTime = runFrame();
+
+        // WAIT UNTIL THE NEXT FRAME IS SCHEDULED IF NEEDED
+        if (!unlockedFramerate) {
+            pacer.waitUntil(frameSchedule);
         }
 
+        // CALCULATE STATISTICS AND FINISH UP
+        endFrame(startTime);
+    }
+
+    /**
+     * Sets some initial values for the statistics in case they are read
+     * before the first frame finishes
+     */
+    void prepare() {
+        lastRuntime = targetNanos;
+        averageRuntime = lastRuntime;
+        performance = 1.0f;
+    }
+
+    /**
+     * Runs the child once, without waiting or recording any statistics
+     *
+     * @return the start time of the frame, as given by the clock
+     */
+    long runFrame() {
         // GET THE START TIME
-        long startTime = System.nanoTime();
+        long startTime = clock.nanoTime();
 
         // PASS ON THE METHOD TO THE CHILD WHILE OBSERVING STATISTICS
-        child.run();
-
-        // GET THE DELTA TIME AND FIND THE WAIT TIME
-        long stopTime = System.nanoTime();
-        long delta = targetNanos - (stopTime - startTime); // TOTAL IN NANOSECONDS, SUBTRACT 500000 FOR ROUNDING 
-
-        // SLEEP FOR SOME AMOUNT OF TIME IF NEEDED
-        if (delta > 0 && !unlockedFramerate) {
-            try {
-                // Thread.sleep((delta + 500000) / 1000000);
-                Thread.sleep(delta / 1000000);
-
-                // THIS PART IS CPU HEAVY BUT RELATIVELY SHORT COMPARED TO THE LONGER SLEEP
-                if (waitNanos) {
-                    long endTime = targetNanos + startTime;
-                    while (System.nanoTime() < endTime) {
-                        Thread.yield();
-                    }
-                }
-                // JUST DO A SIMPLE LOOP FOR THE NANOSECONDS
-            } catch (InterruptedException ex) {
+        boolean render = schedule(startTime);
+        if (fixedTimestep) {
+            runFixedSteps(startTime, render);
+        } else if (render) {
+            child.run();
+        } else {
+            ((FixedStepRunnable) child).step();
+        }
+        lastWorkTime = clock.nanoTime() - startTime;
+        return startTime;
+    }
+
+    /**
+     * Schedules the next frame and decides whether or not the current one
+     * should be rendered, depending on the overload policy
+     *
+     * @param startTime the start time of the current frame
+     * @return true if the frame should be rendered
+     */
+    private boolean schedule(long startTime) {
+        OverloadPolicy policy = overloadPolicy;
+
+        // FIND OUT HOW FAR BEHIND SCHEDULE WE ARE
+        long lateness = scheduled ? startTime - frameSchedule : 0;
+        if (policy == OverloadPolicy.NONE) {
+            // LATE FRAMES SIMPLY PUSH BACK THE REST
+            lateness = 0;
+            frameSchedule = startTime;
+        } else if (!scheduled || lateness > (maxSkips + 1L) * targetNanos) {
+            // TOO FAR BEHIND TO EVER CATCH UP, SO JUST START OVER FROM HERE
+            if (scheduled) {
+                resyncs++;
             }
+            lateness = 0;
+            frameSchedule = startTime;
+        }
+        frameSchedule += targetNanos;
+        scheduled = true;
+
+        // DECIDE WHETHER TO SKIP RENDERING
+        boolean skip = false;
+        boolean reduced = false;
+        switch (policy) {
+            case SKIP_RENDER:
+                skip = lateness >= targetNanos;
+                break;
+            case REDUCE_RENDER_RATE:
+                // JUDGED BY THE WORK DONE, SINCE THE WAIT AFTER IT IS ALWAYS A LITTLE OFF
+                boolean overloaded = lateness >= targetNanos || lastWorkTime > targetNanos;
+                skip = reduced = overloaded && framenumber % renderDivisor != 0;
+                break;
         }
 
-        // CALCULATE STATISTICS AND FINISH UP
-        long runtime = System.nanoTime() - startTime;
+        if (skip && consecutiveSkips >= maxSkips) {
+            forcedFrames++;
+            skip = false;
+        }
+
+        if (skip) {
+            consecutiveSkips++;
+            if (reduced) {
+                reducedFrames++;
+            } else {
+                skippedFrames++;
+            }
+        } else {
+            consecutiveSkips = 0;
+        }
+        return !skip;
+    }
 
-        averageRuntime = (15 * lastRuntime + runtime) / 16;
+    /**
+     * Records the statistics for a frame which has finished
+     *
+     * @param startTime the start time of the frame, as given by the clock
+     */
+    void endFrame(long startTime) {
+        long runtime = clock.nanoTime() - startTime;
+
+        averageRuntime = (15 * averageRuntime + runtime) / 16;
         performance = (float) runtime / targetNanos;
         lastRuntime = runtime;
+        histogram.record(runtime);
         framenumber++;
     }
 
+    /**
+     * Runs as many fixed steps as the elapsed time allows, up to the maximum
+     * number of catch-up steps, and then renders once if required
+     *
+     * @param startTime the start time of the current frame
+     * @param render true in order to render after stepping
+     */
+    private void runFixedSteps(long startTime, boolean render) {
+        FixedStepRunnable stepped = (FixedStepRunnable) child;
+
+        // ADD THE TIME ELAPSED SINCE THE LAST FRAME, OR A SINGLE STEP IF THIS IS THE FIRST ONE
+        accumulator += (firstStep ? stepNanos : startTime - lastFrameStart);
+        lastFrameStart = startTime;
+        firstStep = false;
+
+        // CONSUME THE ACCUMULATED TIME IN FIXED STEPS
+        int steps = 0;
+        while (accumulator >= stepNanos && steps < maxSteps) {
+            stepped.step();
+            accumulator -= stepNanos;
+            stepnumber++;
+            steps++;
+        }
+
+        // DROP WHATEVER WE COULDN'T CATCH UP ON SO A SLOW FRAME DOESN'T SPIRAL INTO SLOWER ONES
+        if (accumulator >= stepNanos) {
+            droppedSteps += accumulator / stepNanos;
+            accumulator %= stepNanos;
+        }
+
+        // AND RENDER ONCE, BETWEEN THE LAST TWO STEPS
+        interpolation = (float) accumulator / stepNanos;
+        if (render) {
+            stepped.present(interpolation);
+        }
+    }
+
+    /**
+     * The different ways a TimeKeeper can react to frames taking longer than
+     * their budget
+     */
+    public enum OverloadPolicy {
+
+        /**
+         * Late frames push back every following frame, slowing down the game
+         */
+        NONE,
+        /**
+         * Frames which start a full frame or more behind schedule run the
+         * simulation without rendering until the timer catches up
+         */
+        SKIP_RENDER,
+        /**
+         * While frames are over budget, only one in every few frames is
+         * rendered while the simulation keeps running on schedule
+         */
+        REDUCE_RENDER_RATE
+    }
+
     /**
      * @return A string representation of the timekeeper's statistics
      */
     @Override
     public String toString() {
-        return String.format("[%08d]\t[%4.2f%c\t% 8.2f\t%.3f]", framenumber, targetFramerate, (unlockedFramerate ? '+' : ' '), 1000000000.0f / averageRuntime, performance);
+        return String.format("[%08d]\t[%4.2f%c\t% 8.2f\t%.3f\t%d skipped]", framenumber, targetFramerate, (unlockedFramerate ? '+' : ' '), 1000000000.0f / averageRuntime, performance, skippedFrames + reducedFrames);
     }
 }
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.game;
+
+/**
+ * GameClock which only moves forward when told to, allowing a game to be run
+ * deterministically and as fast as possible
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class VirtualClock implements GameClock {
+
+    // THE CURRENT TIME
+    private volatile long now;
+
+    /**
+     * Constructor for a clock starting at 0
+     */
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * Constructor for a clock starting at a given time
+     *
+     * @param start the initial time in nanoseconds
+     */
+    public VirtualClock(long start) {
+        this.now = start;
+    }
+
+    /**
+     * Moves the clock forward
+     *
+     * @param nanos the number of nanoseconds to move forward
+     * @return the new time
+     */
+    public long advance(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("A clock cannot move backwards");
+        }
+        return now += nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%.3fs]", now / 1000000000.0);
+    }
+}
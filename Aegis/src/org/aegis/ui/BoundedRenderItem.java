@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * Interface for RenderItems which know the area they cover, allowing them to
+ * be culled when they fall outside the active Viewport. Items which are culled
+ * aren't rendered at all, so rendering shouldn't change their state.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public interface BoundedRenderItem extends RenderItem {
+
+    /**
+     * Returns the area the item covers when rendered with no offset
+     *
+     * @param out the rectangle to store the bounds in
+     * @return the same rectangle, holding the item's bounds
+     */
+    public abstract Rectangle2D.Float getBounds(Rectangle2D.Float out);
+}
@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the areas of the screen which need to be redrawn. Overlapping
+ * areas are merged as they are added, and once there are too many separate
+ * areas they are collapsed into the single rectangle containing all of them.
+ * The shared tracker is where movable items report the bounds they leave and
+ * enter by default, but only while dirty-region rendering is enabled. Items
+ * drawn through a graphics system with its own tracker report to that one
+ * instead.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class DirtyRegionTracker {
+
+    // MAXIMUM NUMBER OF SEPARATE RECTANGLES BEFORE THEY'RE COLLAPSED INTO ONE
+    public static final int MAX_RECTANGLES = 16;
+
+    // TRACKER WHICH ITEMS REPORT TO, IN WORLD COORDINATES
+    public static final DirtyRegionTracker SHARED = new DirtyRegionTracker();
+
+    // THE DAMAGED AREAS
+    private final List<Rectangle> rects;
+
+    // WHETHER OR NOT EVERYTHING IS DAMAGED
+    private boolean full;
+
+    // WHETHER OR NOT ITEMS SHOULD REPORT DAMAGE
+    private volatile boolean enabled;
+
+    /**
+     * Constructor for an empty tracker
+     */
+    public DirtyRegionTracker() {
+        this.rects = new ArrayList();
+    }
+
+    /**
+     * Sets whether or not items should report damage to this tracker
+     *
+     * @param enabled true to have items report damage
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return True if items should report damage to this tracker
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Marks an area as needing to be redrawn
+     *
+     * @param x the x coordinate of the area
+     * @param y the y coordinate of the area
+     * @param width the width of the area
+     * @param height the height of the area
+     */
+    public synchronized void damage(float x, float y, float width, float height) {
+        if (full || !(width > 0) || !(height > 0)) {
+            return;
+        }
+        int left = (int) Math.floor(x);
+        int top = (int) Math.floor(y);
+        Rectangle r = new Rectangle(left, top, (int) Math.ceil(x + width) - left, (int) Math.ceil(y + height) - top);
+
+        // ABSORB EVERY RECTANGLE THIS TOUCHES
+        for (int i = rects.size() - 1; i >= 0; i--) {
+            Rectangle other = rects.get(i);
+            if (r.intersects(other)) {
+                r.add(other);
+                rects.remove(i);
+                i = rects.size();
+            }
+        }
+        rects.add(r);
+
+        if (rects.size() > MAX_RECTANGLES) {
+            Rectangle union = rects.get(0);
+            for (int i = 1; i < rects.size(); i++) {
+                union.add(rects.get(i));
+            }
+            rects.clear();
+            rects.add(union);
+        }
+    }
+
+    /**
+     * Marks everything as needing to be redrawn
+     */
+    public synchronized void damageAll() {
+        full = true;
+        rects.clear();
+    }
+
+    /**
+     * @return True if everything needs to be redrawn
+     */
+    public synchronized boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return True if nothing needs to be redrawn
+     */
+    public synchronized boolean isEmpty() {
+        return !full && rects.isEmpty();
+    }
+
+    /**
+     * Moves every damaged area into another tracker, offset by a given amount,
+     * and empties this one
+     *
+     * @param other the tracker to move the damage into
+     * @param offsetX the amount to move each area to the right
+     * @param offsetY the amount to move each area down
+     */
+    public void drainTo(DirtyRegionTracker other, float offsetX, float offsetY) {
+        List<Rectangle> moved = new ArrayList();
+        if (drain(moved)) {
+            other.damageAll();
+            return;
+        }
+        for (Rectangle r : moved) {
+            other.damage(r.x + offsetX, r.y + offsetY, r.width, r.height);
+        }
+    }
+
+    /**
+     * Forgets every damaged area without handing it anywhere
+     */
+    public synchronized void clear() {
+        rects.clear();
+        full = false;
+    }
+
+    /**
+     * Takes every damaged area out of the tracker, emptying it
+     *
+     * @param out the list to add the damaged areas to
+     * @return true if everything was damaged, in which case nothing is added
+     */
+    public synchronized boolean drain(List<Rectangle> out) {
+        boolean wasFull = full;
+        if (!full) {
+            out.addAll(rects);
+        }
+        rects.clear();
+        full = false;
+        return wasFull;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return full ? "[DirtyRegionTracker full]" : "[DirtyRegionTracker " + rects + ']';
+    }
+}
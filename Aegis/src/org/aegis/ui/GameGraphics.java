@@ -36,8 +36,32 @@ public interface GameGraphics extends RuntimeSystem {
 
     /**
      * Method called once per game loop, at the end of the game loop. Use this
-     * to render everything in the game
+     * to render everything in the game. If nothing has been queued or
+     * discarded since the last update, such as when no simulation step ran
+     * before this frame, the previous frame is shown again.
      */
     @Override
     public abstract void update();
+
+    /**
+     * Queues an item for rendering in the next available pass
+     *
+     * @param item the RenderItem to add
+     */
+    public abstract void addToRenderList(RenderItem item);
+
+    /**
+     * Discards every item queued since the last update without rendering
+     * them. This is called at the start of every simulation step, so that
+     * when several steps run before a frame is rendered only the items queued
+     * by the last one are drawn.
+     */
+    public abstract void discardRenderList();
+
+    /**
+     * Makes whatever the game is drawn onto visible, such as by showing its
+     * window. This is called once when the game starts, and does nothing for
+     * graphics which don't draw onto the screen.
+     */
+    public abstract void display();
 }
@@ -0,0 +1,48 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.awt.Image;
+
+/**
+ * Interface for RenderItems which draw all or part of a single image. Such an
+ * item can describe exactly what it would draw ahead of time, which lets a
+ * frame record it and draw it later even if the item has changed since.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public interface ImageRenderItem extends RenderItem {
+
+    /**
+     * Describes what rendering the item at an offset would currently draw
+     *
+     * @param offsetX the X offset it would be rendered at
+     * @param offsetY the Y offset it would be rendered at
+     * @param out an array of at least 8 ints, to store the corners of the
+     * destination area followed by the corners of the source area, each as
+     * x1, y1, x2, y2
+     * @return the image to draw from, or null if the item would draw nothing
+     */
+    public abstract Image describe(float offsetX, float offsetY, int[] out);
+}
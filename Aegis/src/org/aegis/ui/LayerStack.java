@@ -23,13 +23,21 @@
  */
 package org.aegis.ui;
 
+import java.awt.AlphaComposite;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
+import org.aegis.data.ImageIngestor;
 
 /**
  * Object which manages multiple different layers of RenderItems, able to render
- * them in order of lowest to highest
+ * them in order of lowest to highest. Layers which rarely change, such as
+ * terrain, can be marked as static, in which case they are drawn once into a
+ * cached image and then rendered with a single draw until their contents
+ * change.
  *
  * @author Rogue <Alice Q.>
  */
@@ -38,6 +46,15 @@ public class LayerStack implements RenderItem {
     // THE LAYERS
     private final ArrayList<RenderList> layers;
 
+    // CACHED IMAGES OF STATIC LAYERS, NULL FOR LAYERS WHICH AREN'T STATIC
+    private final ArrayList<StaticCache> caches;
+
+    // NUMBER OF TIMES A STATIC LAYER HAS BEEN REDRAWN INTO ITS CACHE
+    private long rebuilds;
+
+    // VIEWPORT TO CULL ITEMS AGAINST, OR NULL TO DRAW EVERYTHING
+    private Viewport viewport;
+
     /**
      * Constructor which also creates an initial number of layers
      *
@@ -45,8 +62,10 @@ public class LayerStack implements RenderItem {
      */
     public LayerStack(int initSize) {
         layers = new ArrayList(initSize);
+        caches = new ArrayList(initSize);
         for (int i = 0; i < initSize; i++) {
             layers.add(new RenderList());
+            caches.add(null);
         }
     }
 
@@ -55,6 +74,7 @@ public class LayerStack implements RenderItem {
      */
     public LayerStack() {
         layers = new ArrayList();
+        caches = new ArrayList();
     }
 
     /**
@@ -65,9 +85,70 @@ public class LayerStack implements RenderItem {
     public int createNewLayer() {
         RenderList rl = new RenderList();
         layers.add(rl);
+        caches.add(null);
         return layers.size() - 1;
     }
 
+    /**
+     * Marks a layer as static, so that it's drawn into a cached image which
+     * is reused until an item is added to or removed from the layer. Only the
+     * area from the origin to the given size is cached, anything outside of
+     * it is cut off. Items which change their appearance without being
+     * removed require the layer to be invalidated.
+     *
+     * @param layerNum the layer index to cache
+     * @param width the width of the area to cache
+     * @param height the height of the area to cache
+     */
+    public void setStatic(int layerNum, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("A static layer needs a positive size");
+        }
+        caches.set(layerNum, new StaticCache(width, height));
+    }
+
+    /**
+     * Turns a static layer back into one which is drawn item by item every
+     * time, releasing its cached image
+     *
+     * @param layerNum the layer index
+     */
+    public void setDynamic(int layerNum) {
+        StaticCache cache = caches.set(layerNum, null);
+        if (cache != null) {
+            cache.image.flush();
+        }
+    }
+
+    /**
+     * @param layerNum the layer index
+     * @return True if the layer is drawn from a cached image
+     */
+    public boolean isStatic(int layerNum) {
+        return caches.get(layerNum) != null;
+    }
+
+    /**
+     * Forces a static layer to be redrawn into its cache the next time it's
+     * rendered, such as when one of its items changed its appearance
+     *
+     * @param layerNum the layer index
+     */
+    public void invalidate(int layerNum) {
+        StaticCache cache = caches.get(layerNum);
+        if (cache != null) {
+            cache.valid = false;
+        }
+    }
+
+    /**
+     * @return The number of times a static layer has been redrawn into its
+     * cache
+     */
+    public long getCacheRebuilds() {
+        return rebuilds;
+    }
+
     /**
      * Returns the contents of one of the layers
      *
@@ -97,13 +178,31 @@ public class LayerStack implements RenderItem {
         return layers.size();
     }
 
+    /**
+     * Sets the viewport items in every layer are culled against whenever the
+     * stack is rendered
+     *
+     * @param viewport the viewport, or null to draw every item
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * @return The viewport items are culled against, or null if there is none
+     */
+    public Viewport getViewport() {
+        return viewport;
+    }
+
     /**
      * Clears each of the layers in the layer stack, preserving the layers
-     * themselves
+     * themselves. Static layers are cleared as well, and their caches are
+     * rebuilt from whatever they contain when they are next drawn.
      */
     public void clear() {
-        for (RenderList list : layers) {
-            list.clear();
+        for (int i = 0; i < layers.size(); i++) {
+            layers.get(i).clear();
         }
     }
 
@@ -111,13 +210,57 @@ public class LayerStack implements RenderItem {
      * Deletes all the layers from the layer stack
      */
     public void clearAll() {
+        for (StaticCache cache : caches) {
+            if (cache != null) {
+                cache.image.flush();
+            }
+        }
         layers.clear();
+        caches.clear();
     }
 
     @Override
     public void render(Graphics g, float offsetX, float offsetY) {
-        for (RenderList list : layers) {
-            list.render(g, offsetX, offsetY);
+        Viewport vp = viewport;
+        for (int i = 0; i < layers.size(); i++) {
+            RenderList list = layers.get(i);
+            StaticCache cache = caches.get(i);
+            if (cache == null) {
+                list.render(g, offsetX, offsetY, vp != null ? vp : list.getViewport());
+                continue;
+            }
+
+            // REDRAW THE CACHE IF THE LAYER CHANGED SINCE IT WAS LAST DRAWN
+            if (!cache.valid || cache.modCount != list.getModCount()) {
+                Graphics2D cg = cache.image.createGraphics();
+                try {
+                    cg.setComposite(AlphaComposite.Clear);
+                    cg.fillRect(0, 0, cache.image.getWidth(), cache.image.getHeight());
+                    cg.setComposite(AlphaComposite.SrcOver);
+                    list.render(cg, 0, 0, null);
+                } finally {
+                    cg.dispose();
+                }
+                cache.modCount = list.getModCount();
+                cache.valid = true;
+                rebuilds++;
+            }
+            g.drawImage(cache.image, (int) offsetX, (int) offsetY, null);
+        }
+    }
+
+    /**
+     * The cached image of a static layer, along with the layer's modification
+     * count when it was drawn
+     */
+    private static class StaticCache {
+
+        private final BufferedImage image;
+        private int modCount;
+        private boolean valid;
+
+        private StaticCache(int width, int height) {
+            this.image = ImageIngestor.createCompatible(width, height, Transparency.TRANSLUCENT);
         }
     }
 }
@@ -0,0 +1,355 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import org.aegis.data.FrameCapture;
+
+/**
+ * GameGraphics implementation which renders into an offscreen BufferedImage
+ * instead of a window, or simply discards everything when rendering is turned
+ * off. This requires no display and works in headless environments, such as
+ * for rendering thumbnails or replays on a server or benchmarking rendering
+ * on a machine without a screen. The image is reused from frame to frame and
+ * its pixels can be read back after each one.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class OffscreenGraphics implements GameGraphics {
+
+    // THE IMAGE EVERYTHING IS RENDERED ONTO
+    private BufferedImage image;
+
+    // PRIMARY RENDERLIST CONTAINING ALL OF THE GAME'S RENDER ITEMS
+    private final RenderList renderlist;
+
+    // WHETHER THE RENDERLIST HAS BEEN DRAWN SINCE IT WAS LAST CHANGED
+    private boolean presented;
+
+    // LAYERS DRAWN BENEATH THE RENDERLIST EVERY FRAME, OR NULL FOR NONE
+    private LayerStack layers;
+
+    // VIEWPORT ITEMS ARE DRAWN THROUGH, OR NULL TO DRAW AT THE ORIGIN
+    private Viewport viewport;
+
+    // BACKGROUND COLOR
+    private Color background;
+
+    // WHETHER OR NOT ANYTHING GETS DRAWN
+    private boolean rendering;
+
+    // RECEIVES A COPY OF EVERY FINISHED FRAME, OR NULL IF NOT CAPTURING
+    private volatile FrameCapture capture;
+
+    // NUMBER OF FRAMES RENDERED AND HOW LONG THE LAST ONE TOOK
+    private long framecount;
+    private long lastRenderNanos;
+
+    /**
+     * Constructor
+     *
+     * @param width the width of the offscreen image
+     * @param height the height of the offscreen image
+     */
+    public OffscreenGraphics(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image size must be positive and non-zero");
+        }
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        this.renderlist = new RenderList();
+        this.background = Color.black;
+        this.rendering = true;
+    }
+
+    /**
+     * Sets whether or not items are actually drawn. When off, queued items
+     * are simply discarded every frame, which is useful for measuring the
+     * cost of the simulation alone.
+     *
+     * @param on true in order to draw items, false to discard them
+     */
+    public void setRendering(boolean on) {
+        this.rendering = on;
+    }
+
+    /**
+     * @return True if items are drawn, false if they're discarded
+     */
+    public boolean isRendering() {
+        return rendering;
+    }
+
+    /**
+     * Sets the color the image is cleared to at the start of every frame
+     *
+     * @param background the background color
+     */
+    public void setBackground(Color background) {
+        this.background = background;
+    }
+
+    /**
+     * Sets the viewport the world is drawn through. Items are drawn offset by
+     * the viewport's position and BoundedRenderItems outside of it are culled.
+     *
+     * @param viewport the viewport, or null to draw everything at the origin
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * @return The viewport the world is drawn through, or null if there is
+     * none
+     */
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Sets a LayerStack drawn beneath the render list every frame. The stack
+     * is never cleared here, so its contents are managed by the caller.
+     *
+     * @param layers the layers to draw, or null for none
+     */
+    public void setLayers(LayerStack layers) {
+        this.layers = layers;
+    }
+
+    /**
+     * @return The LayerStack drawn beneath the render list every frame, or
+     * null if there is none
+     */
+    public LayerStack getLayers() {
+        return layers;
+    }
+
+    /**
+     * Changes the size of the image. A new image is only created if the size
+     * actually changes, and the old one is no longer drawn onto.
+     *
+     * @param width the new width
+     * @param height the new height
+     */
+    public void setSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Image size must be positive and non-zero");
+        }
+        if (width != image.getWidth() || height != image.getHeight()) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+    }
+
+    /**
+     * @return The width of the image
+     */
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    /**
+     * @return The height of the image
+     */
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Returns the image everything is rendered onto. This is drawn over by
+     * every frame, so use {@link #snapshot()} to keep a frame around.
+     *
+     * @return The image everything is rendered onto
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Reads the pixels of the last frame as non-premultiplied ARGB, row by
+     * row from the top left
+     *
+     * @param out the array to read into, or null to allocate one. A new array
+     * is also allocated if it's too small to hold the whole frame.
+     * @return the array holding the pixels
+     */
+    public int[] getPixels(int[] out) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (out == null || out.length < width * height) {
+            out = new int[width * height];
+        }
+        return image.getRGB(0, 0, width, height, out, 0, width);
+    }
+
+    /**
+     * Reads a single pixel of the last frame
+     *
+     * @param x the X coordinate of the pixel
+     * @param y the Y coordinate of the pixel
+     * @return the pixel as non-premultiplied ARGB
+     */
+    public int getPixel(int x, int y) {
+        return image.getRGB(x, y);
+    }
+
+    /**
+     * Copies the last frame into a new image which isn't drawn over by later
+     * frames, such as for saving a thumbnail
+     *
+     * @return a copy of the last frame
+     */
+    public BufferedImage snapshot() {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return copy;
+    }
+
+    /**
+     * Sets where a copy of every finished frame is sent to be recorded
+     *
+     * @param capture the capture to send frames to, or null to stop sending
+     * them
+     */
+    public void setCapture(FrameCapture capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * @return The capture frames are sent to, or null if there is none
+     */
+    public FrameCapture getCapture() {
+        return capture;
+    }
+
+    /**
+     * @return The number of frames rendered so far
+     */
+    public long getFrameCount() {
+        return framecount;
+    }
+
+    /**
+     * @return The time in nanoseconds the last frame took to render
+     */
+    public long getLastRenderTime() {
+        return lastRenderNanos;
+    }
+
+    @Override
+    public void addToRenderList(RenderItem item) {
+        if (presented) {
+            renderlist.clear();
+            presented = false;
+        }
+        renderlist.add(item);
+    }
+
+    /**
+     * Does nothing, since there is no window to show
+     */
+    @Override
+    public void display() {
+    }
+
+    @Override
+    public void discardRenderList() {
+        renderlist.clear();
+        presented = false;
+    }
+
+    /**
+     * Renders everything queued since the last frame onto the image. The
+     * items stay queued, so they're drawn again if nothing new is queued
+     * before the next update, but the next item queued starts a new list
+     */
+    @Override
+    public void update() {
+        if (rendering) {
+            draw(renderlist);
+        }
+        presented = true;
+    }
+
+    /**
+     * Renders a single frame made up of one item, such as a RenderList or a
+     * LayerStack, straight away and outside of the game loop. The frame is
+     * drawn the same way as during an update, over the layers if there are
+     * any, and nothing queued in the render list is touched.
+     *
+     * @param item the item to render
+     * @return the image the frame was rendered onto
+     */
+    public BufferedImage render(RenderItem item) {
+        draw(item);
+        return image;
+    }
+
+    /**
+     * Clears the image and draws the layers followed by an item onto it
+     *
+     * @param item the item to draw
+     */
+    private void draw(RenderItem item) {
+        long start = System.nanoTime();
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setBackground(background);
+            g.clearRect(0, 0, image.getWidth(), image.getHeight());
+            if (viewport == null) {
+                if (layers != null) {
+                    layers.render(g, 0, 0);
+                }
+                item.render(g, 0, 0);
+            } else {
+                viewport.beginFrame();
+                float offsetX = -viewport.getOffsetX();
+                float offsetY = -viewport.getOffsety();
+                if (layers != null) {
+                    layers.render(g, offsetX, offsetY);
+                }
+                if (item instanceof RenderList) {
+                    ((RenderList) item).render(g, offsetX, offsetY, viewport);
+                } else {
+                    item.render(g, offsetX, offsetY);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        framecount++;
+        lastRenderNanos = System.nanoTime() - start;
+
+        FrameCapture c = capture;
+        if (c != null) {
+            c.capture(image);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.locks.LockSupport;
+import org.aegis.data.FrameCapture;
+import org.aegis.data.TripleBuffer;
+
+/**
+ * Renderer which draws frames on its own thread so that the simulation can
+ * build frame N+1 while frame N is being drawn. The simulation thread queues
+ * commands into a RenderSnapshot and publishes it once per frame, the render
+ * thread draws the latest published snapshot into an offscreen image, and the
+ * display picks up the latest finished image whenever it paints. Both
+ * handoffs go through lock-free triple buffers, so no stage ever waits on
+ * another.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class PipelinedRenderer implements Runnable {
+
+    // HANDOFF FROM THE SIMULATION TO THE RENDER THREAD
+    private final TripleBuffer<RenderSnapshot> snapshots;
+
+    // HANDOFF FROM THE RENDER THREAD TO THE DISPLAY
+    private final TripleBuffer<BufferedImage[]> images;
+
+    // CALLED WHENEVER A NEW IMAGE IS READY
+    private final Runnable onFrame;
+
+    // THE RENDER THREAD
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    // BACKGROUND
+    private volatile RenderItem background;
+    private volatile Color backgroundColor;
+
+    // RECEIVES A COPY OF EVERY FINISHED FRAME, OR NULL IF NOT CAPTURING
+    private volatile FrameCapture capture;
+
+    // STATISTICS
+    private volatile long framecount;
+    private volatile long lastRenderNanos;
+
+    /**
+     * Constructor
+     *
+     * @param onFrame a Runnable called on the render thread every time a new
+     * image is ready, such as to request a repaint. This may be null.
+     */
+    public PipelinedRenderer(Runnable onFrame) {
+        this.snapshots = new TripleBuffer(new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot());
+        this.images = new TripleBuffer(new BufferedImage[1], new BufferedImage[1], new BufferedImage[1]);
+        this.onFrame = onFrame;
+        this.backgroundColor = Color.black;
+    }
+
+    /**
+     * Starts the render thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "AEGIS Render");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the render thread after its current frame
+     */
+    public synchronized void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Sets what is drawn behind every frame
+     *
+     * @param color the color to clear each frame to
+     * @param item a RenderItem drawn before anything else, or null for none
+     */
+    public void setBackground(Color color, RenderItem item) {
+        this.backgroundColor = color;
+        this.background = item;
+    }
+
+    /**
+     * Sets where a copy of every finished frame is sent to be recorded
+     *
+     * @param capture the capture to send frames to, or null to stop sending
+     * them
+     */
+    public void setCapture(FrameCapture capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * @return The capture frames are sent to, or null if there is none
+     */
+    public FrameCapture getCapture() {
+        return capture;
+    }
+
+    // SIMULATION SIDE
+    // - submit
+    // - publish
+    /**
+     * Queues an item to be drawn in the frame currently being built. This
+     * must only be called from the simulation thread.
+     *
+     * @param item the item to draw
+     * @param offsetX the X offset to draw it at
+     * @param offsetY the Y offset to draw it at
+     */
+    public void submit(RenderItem item, float offsetX, float offsetY) {
+        snapshots.getBack().add(item, offsetX, offsetY);
+    }
+
+    /**
+     * Throws away everything queued in the frame currently being built. This
+     * must only be called from the simulation thread.
+     */
+    public void discard() {
+        snapshots.getBack().clear();
+    }
+
+    /**
+     * Hands the frame currently being built to the render thread and starts a
+     * new one, copying what each ImageRenderItem in it currently draws. This
+     * must only be called from the simulation thread.
+     *
+     * @param width the width of the frame
+     * @param height the height of the frame
+     */
+    public void publish(int width, int height) {
+        RenderSnapshot snapshot = snapshots.getBack();
+        snapshot.setDimensions(width, height);
+        snapshot.copyState();
+        snapshots.publish().clear();
+        LockSupport.unpark(thread);
+    }
+
+    // DISPLAY SIDE
+    /**
+     * Returns the most recently finished frame. This must only be called from
+     * a single display thread, such as the event dispatch thread.
+     *
+     * @return the latest image, or null if no frame has finished yet
+     */
+    public BufferedImage getFrame() {
+        images.consume();
+        return images.getFront()[0];
+    }
+
+    // RENDER SIDE
+    @Override
+    public void run() {
+        while (running) {
+            if (!snapshots.consume()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            RenderSnapshot snapshot = snapshots.getFront();
+            int width = Math.max(1, snapshot.getWidth());
+            int height = Math.max(1, snapshot.getHeight());
+
+            // REUSE THE BACK IMAGE UNLESS THE FRAME CHANGED SIZE
+            BufferedImage[] slot = images.getBack();
+            if (slot[0] == null || slot[0].getWidth() != width || slot[0].getHeight() != height) {
+                slot[0] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+
+            Graphics2D g = slot[0].createGraphics();
+            try {
+                g.setBackground(backgroundColor);
+                g.clearRect(0, 0, width, height);
+                RenderItem bg = background;
+                if (bg != null) {
+                    bg.render(g, 0, 0);
+                }
+                snapshot.render(g);
+            } finally {
+                g.dispose();
+            }
+
+            // COPY THE FRAME BEFORE THE DISPLAY CAN PICK IT UP
+            FrameCapture c = capture;
+            if (c != null) {
+                c.capture(slot[0]);
+            }
+
+            images.publish();
+            lastRenderNanos = System.nanoTime() - start;
+            framecount++;
+
+            if (onFrame != null) {
+                onFrame.run();
+            }
+        }
+    }
+
+    // STATISTICS
+    /**
+     * @return The number of frames drawn by the render thread
+     */
+    public long getFrameCount() {
+        return framecount;
+    }
+
+    /**
+     * @return The number of frames published by the simulation which were
+     * replaced by newer ones before the render thread could draw them
+     */
+    public long getDroppedFrames() {
+        return snapshots.getDropped();
+    }
+
+    /**
+     * @return The time taken to draw the last frame, in nanoseconds
+     */
+    public long getLastRenderTime() {
+        return lastRenderNanos;
+    }
+}
@@ -24,24 +24,59 @@
 package org.aegis.ui;
 
 import java.awt.Graphics;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 /**
  * Container for RenderItems which itself functions as a RenderItem, rendering
- * everything inside it sequentially in order of it being added.
+ * everything inside it sequentially in order of it being added. Items are kept
+ * in a ring over a single array which grows as needed, up to the maximum size
+ * if there is one, and keeps its capacity when cleared, so once a list has
+ * grown to fit a frame adding and rendering items allocates nothing.
+ * <p>
+ * A list can instead be set to sort its items by a key given when each one is
+ * added, made by {@link RenderSorter#key(int, float, Object)} out of a layer,
+ * a depth and the source image. The list is then sorted right before it's
+ * drawn, with items of equal keys kept in the order they were added. Items
+ * added without a key have a key of 0, which sorts before every layer.
  *
  * @author Rogue <Alice Q.>
  */
 public class RenderList implements RenderItem, java.util.Queue<RenderItem> {
 
+    // INITIAL ARRAY CAPACITY
+    private static final int DEFAULT_CAPACITY = 16;
+
     // THE ACTUAL DATA CONTAINER
-    private LinkedList<RenderItem> renderList;
+    private RenderItem[] items;
+
+    // SORT KEYS OF EACH ITEM, PARALLEL TO THE ITEMS
+    private long[] keys;
+
+    // WHETHER ITEMS ARE SORTED BY KEY BEFORE BEING DRAWN
+    private boolean sorted;
+    private boolean unsorted;
+    private RenderSorter sorter;
+
+    // NUMBER OF SOURCE IMAGE RUNS IN THE LAST SORT
+    private int batches;
+
+    // INDEX OF THE FIRST ITEM AND THE NUMBER OF ITEMS
+    private int head;
+    private int size;
+
+    // NUMBER OF STRUCTURAL CHANGES, TO DETECT CHANGES WHILE ITERATING
+    private int modCount;
 
     // THE MAXIMUM LIST SIZE
     private int maxSize;
 
+    // VIEWPORT TO CULL ITEMS AGAINST, OR NULL TO DRAW EVERYTHING
+    private Viewport viewport;
+
     /**
      * Constructor for a RenderList with no upper limit and no persistence
      */
@@ -57,54 +92,302 @@ public class RenderList implements RenderItem, java.util.Queue<RenderItem> {
      */
     public RenderList(int maxSize) {
         this.maxSize = maxSize;
-        this.renderList = new LinkedList();
+        this.items = new RenderItem[maxSize > 0 ? Math.min(maxSize, DEFAULT_CAPACITY) : DEFAULT_CAPACITY];
+        this.keys = new long[items.length];
+    }
+
+    /**
+     * Sets whether the list sorts its items by their keys before drawing
+     * them, rather than drawing them in the order they were added
+     *
+     * @param sorted true to sort items by key
+     */
+    public void setSorted(boolean sorted) {
+        this.sorted = sorted;
+        this.unsorted = sorted;
+    }
+
+    /**
+     * @return True if the list sorts its items by key before drawing them
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Returns the sort key an item was added with
+     *
+     * @param index the position, where 0 is the first item
+     * @return the item's sort key, which is 0 if it was added without one
+     */
+    public long getKey(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return keys[physical(index)];
+    }
+
+    /**
+     * Sorts the items by their keys if anything was added since the last
+     * sort. This is done automatically when a sorted list is rendered.
+     */
+    public void sort() {
+        if (!unsorted) {
+            return;
+        }
+        unsorted = false;
+        if (size < 2) {
+            batches = size;
+            return;
+        }
+        if (sorter == null) {
+            sorter = new RenderSorter();
+        }
+
+        // BRING THE RING BACK TO THE START OF THE ARRAY SO IT CAN BE SORTED
+        if (head + size > items.length) {
+            RenderItem[] movedItems = new RenderItem[items.length];
+            long[] movedKeys = new long[keys.length];
+            int first = items.length - head;
+            System.arraycopy(items, head, movedItems, 0, first);
+            System.arraycopy(items, 0, movedItems, first, size - first);
+            System.arraycopy(keys, head, movedKeys, 0, first);
+            System.arraycopy(keys, 0, movedKeys, first, size - first);
+            items = movedItems;
+            keys = movedKeys;
+            head = 0;
+        } else if (head > 0) {
+            System.arraycopy(items, head, items, 0, size);
+            System.arraycopy(keys, head, keys, 0, size);
+            Arrays.fill(items, size, head + size, null);
+            head = 0;
+        }
+
+        sorter.sort(keys, items, size);
+        batches = RenderSorter.countRuns(keys, size);
+        modCount++;
+    }
+
+    /**
+     * @return The number of runs of items sharing a source image after the
+     * last sort, which is how many times drawing switches between images
+     */
+    public int getBatchCount() {
+        return batches;
+    }
+
+    /**
+     * Returns an item by its position in the list
+     *
+     * @param index the position, where 0 is the first item added
+     * @return the item at that position
+     */
+    public RenderItem get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return items[physical(index)];
+    }
+
+    /**
+     * Sets the viewport items are culled against whenever the list is
+     * rendered on its own
+     *
+     * @param viewport the viewport, or null to draw every item
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * @return The viewport items are culled against, or null if there is none
+     */
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Returns a count of every change made to the list's contents, which can
+     * be compared against an earlier value to tell whether it changed since
+     *
+     * @return the number of times the list's contents have changed
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * @return The number of items the list can hold before it has to grow
+     */
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * Converts a position in the list into an index in the array
+     *
+     * @param index the position in the list
+     * @return the index in the array
+     */
+    private int physical(int index) {
+        int i = head + index;
+        return i >= items.length ? i - items.length : i;
+    }
+
+    /**
+     * Makes room for one more item, growing the array if needed
+     *
+     * @return false if the list is already at its maximum size
+     */
+    private boolean ensureRoom() {
+        if (maxSize > 0 && size >= maxSize) {
+            return false;
+        }
+        if (size == items.length) {
+            int capacity = items.length * 2;
+            if (maxSize > 0 && capacity > maxSize) {
+                capacity = maxSize;
+            }
+            RenderItem[] grown = new RenderItem[capacity];
+            long[] grownKeys = new long[capacity];
+            int first = Math.min(size, items.length - head);
+            System.arraycopy(items, head, grown, 0, first);
+            System.arraycopy(items, 0, grown, first, size - first);
+            System.arraycopy(keys, head, grownKeys, 0, first);
+            System.arraycopy(keys, 0, grownKeys, first, size - first);
+            items = grown;
+            keys = grownKeys;
+            head = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the item at a position, shifting every later item down
+     *
+     * @param index the position to remove
+     */
+    private void removeAt(int index) {
+        for (int i = index; i < size - 1; i++) {
+            items[physical(i)] = items[physical(i + 1)];
+            keys[physical(i)] = keys[physical(i + 1)];
+        }
+        items[physical(size - 1)] = null;
+        size--;
+        modCount++;
+    }
+
+    /**
+     * Removes every item which is or isn't in a collection
+     *
+     * @param c the collection to check items against
+     * @param keep true to keep the items in the collection, false to remove
+     * them
+     * @return true if anything was removed
+     */
+    private boolean filter(Collection<?> c, boolean keep) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            RenderItem item = items[physical(i)];
+            if (c.contains(item) == keep) {
+                keys[physical(kept)] = keys[physical(i)];
+                items[physical(kept++)] = item;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        for (int i = kept; i < size; i++) {
+            items[physical(i)] = null;
+        }
+        size = kept;
+        modCount++;
+        return true;
     }
 
     @Override
     public boolean add(RenderItem item) {
-        if (maxSize > 0 && renderList.size() >= maxSize) {
+        if (!offer(item)) {
+            throw new IllegalStateException("Render list is full");
+        }
+        return true;
+    }
+
+    /**
+     * Adds an item along with the key it's sorted by when the list is sorted
+     *
+     * @param item the item to add
+     * @param key the sort key, as made by RenderSorter
+     * @return true
+     * @throws IllegalStateException if the list is full
+     */
+    public boolean add(RenderItem item, long key) {
+        if (!offer(item, key)) {
             throw new IllegalStateException("Render list is full");
         }
-        renderList.addLast(item);
+        return true;
+    }
+
+    /**
+     * Adds an item along with the key it's sorted by when the list is sorted,
+     * if there's room for it
+     *
+     * @param item the item to add
+     * @param key the sort key, as made by RenderSorter
+     * @return false if the list is full
+     */
+    public boolean offer(RenderItem item, long key) {
+        if (!ensureRoom()) {
+            return false;
+        }
+        int i = physical(size);
+        items[i] = item;
+        keys[i] = key;
+        size++;
+        modCount++;
+        unsorted = sorted;
         return true;
     }
 
     @Override
     public RenderItem element() {
-        return renderList.peekFirst();
+        return peek();
     }
 
     @Override
     public boolean offer(RenderItem item) {
-        if (maxSize > 0 && renderList.size() >= maxSize) {
-            return false;
-        }
-        renderList.addLast(item);
-        return true;
+        return offer(item, 0L);
     }
 
     @Override
     public RenderItem peek() {
-        return renderList.peekFirst();
+        return size == 0 ? null : items[head];
     }
 
     @Override
     public RenderItem poll() {
-        if (renderList.isEmpty()) {
+        if (size == 0) {
             return null;
-        } else {
-            return renderList.removeFirst();
         }
+        RenderItem item = items[head];
+        items[head] = null;
+        head = physical(1);
+        size--;
+        modCount++;
+        return item;
     }
 
     @Override
     public RenderItem remove() {
-        return renderList.remove();
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return poll();
     }
 
     @Override
     public int size() {
-        return renderList.size();
+        return size;
     }
 
     public int maxSize() {
@@ -113,63 +396,157 @@ public class RenderList implements RenderItem, java.util.Queue<RenderItem> {
 
     @Override
     public boolean isEmpty() {
-        return renderList.isEmpty();
+        return size == 0;
     }
 
     @Override
     public void clear() {
-        renderList.clear();
+        int first = Math.min(size, items.length - head);
+        Arrays.fill(items, head, head + first, null);
+        Arrays.fill(items, 0, size - first, null);
+        head = 0;
+        size = 0;
+        modCount++;
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        return renderList.retainAll(c);
+        return filter(c, true);
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
-        return renderList.removeAll(c);
+        return filter(c, false);
     }
 
     @Override
     public boolean addAll(Collection<? extends RenderItem> c) {
-        return renderList.addAll(c);
+        for (RenderItem item : c) {
+            add(item);
+        }
+        return !c.isEmpty();
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        return renderList.containsAll(c);
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public boolean remove(Object item) {
-        return renderList.remove(item);
+        for (int i = 0; i < size; i++) {
+            if (item == null ? items[physical(i)] == null : item.equals(items[physical(i)])) {
+                removeAt(i);
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public Object[] toArray() {
-        return renderList.toArray();
+        return toArray(new Object[size]);
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
-        return renderList.toArray(a);
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        for (int i = 0; i < size; i++) {
+            a[i] = (T) items[physical(i)];
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
     }
 
     @Override
     public Iterator iterator() {
-        return renderList.iterator();
+        return new Iterator<RenderItem>() {
+
+            private int next;
+            private int last = -1;
+            private int expected = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public RenderItem next() {
+                if (expected != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return items[physical(last)];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (expected != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+                expected = modCount;
+            }
+        };
     }
 
     @Override
     public boolean contains(Object o) {
-        return renderList.contains(o);
+        for (int i = 0; i < size; i++) {
+            if (o == null ? items[physical(i)] == null : o.equals(items[physical(i)])) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public void render(Graphics g, float offsetX, float offsetY) {
-        for (RenderItem item : renderList) {
-            item.render(g, offsetX, offsetY);
+        render(g, offsetX, offsetY, viewport);
+    }
+
+    /**
+     * Renders every item which is visible in a viewport
+     *
+     * @param g the Graphics to render with
+     * @param offsetX the X offset to apply when rendering
+     * @param offsetY the Y offset to apply when rendering
+     * @param viewport the viewport to cull items against, or null to draw
+     * every item
+     */
+    public void render(Graphics g, float offsetX, float offsetY, Viewport viewport) {
+        if (sorted) {
+            sort();
+        }
+        if (viewport == null) {
+            for (int i = 0; i < size; i++) {
+                items[physical(i)].render(g, offsetX, offsetY);
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            RenderItem item = items[physical(i)];
+            if (viewport.isVisible(item, offsetX, offsetY)) {
+                item.render(g, offsetX, offsetY);
+            }
         }
     }
 }
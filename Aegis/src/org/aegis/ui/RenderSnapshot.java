@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.util.Arrays;
+
+/**
+ * Reusable list of render commands making up a single frame, each being a
+ * RenderItem along with the offset to render it at. Once handed off to a
+ * renderer a snapshot is never written to until it comes back, so it can be
+ * drawn on another thread while the next frame is being built. When the frame
+ * is handed off, every ImageRenderItem is replaced by a record of the image
+ * and area it currently draws, so those items can go on changing. Any other
+ * item is kept as it is, and should not be changed while a frame it's part of
+ * could still be drawing.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class RenderSnapshot {
+
+    // INITIAL COMMAND CAPACITY
+    private final static int INITIAL_CAPACITY = 64;
+
+    // THE COMMANDS
+    private RenderItem[] items;
+    private float[] offsetsX;
+    private float[] offsetsY;
+    private int size;
+
+    // WHAT EACH IMAGE ITEM DRAWS ONCE ITS STATE IS COPIED
+    // - THE IMAGE, OR NULL TO RENDER THE ITEM ITSELF
+    // - THE DESTINATION AND SOURCE CORNERS, 8 PER COMMAND
+    private Image[] images;
+    private int[] corners;
+    private final int[] described = new int[8];
+
+    // FRAME DIMENSIONS
+    private int width;
+    private int height;
+
+    /**
+     * Constructor for an empty snapshot
+     */
+    public RenderSnapshot() {
+        items = new RenderItem[INITIAL_CAPACITY];
+        offsetsX = new float[INITIAL_CAPACITY];
+        offsetsY = new float[INITIAL_CAPACITY];
+        images = new Image[INITIAL_CAPACITY];
+        corners = new int[INITIAL_CAPACITY * 8];
+    }
+
+    /**
+     * Adds a command to the end of the frame
+     *
+     * @param item the item to render
+     * @param offsetX the X offset to render it at
+     * @param offsetY the Y offset to render it at
+     */
+    public void add(RenderItem item, float offsetX, float offsetY) {
+        if (size == items.length) {
+            int capacity = size * 2;
+            items = Arrays.copyOf(items, capacity);
+            offsetsX = Arrays.copyOf(offsetsX, capacity);
+            offsetsY = Arrays.copyOf(offsetsY, capacity);
+            images = Arrays.copyOf(images, capacity);
+            corners = Arrays.copyOf(corners, capacity * 8);
+        }
+        items[size] = item;
+        offsetsX[size] = offsetX;
+        offsetsY[size] = offsetY;
+        size++;
+    }
+
+    /**
+     * Records what every ImageRenderItem in the frame currently draws, so that
+     * drawing the frame no longer depends on the state of those items
+     */
+    public void copyState() {
+        for (int i = 0; i < size; i++) {
+            if (items[i] instanceof ImageRenderItem) {
+                images[i] = ((ImageRenderItem) items[i]).describe(offsetsX[i], offsetsY[i], described);
+                System.arraycopy(described, 0, corners, i * 8, 8);
+                items[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Removes every command while keeping the capacity for reuse
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(images, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Sets the dimensions of the frame
+     *
+     * @param width the width of the frame
+     * @param height the height of the frame
+     */
+    public void setDimensions(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return The width of the frame
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the frame
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The number of commands in the frame
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Runs every command in order
+     *
+     * @param g the Graphics to render with
+     */
+    public void render(Graphics g) {
+        for (int i = 0; i < size; i++) {
+            if (items[i] != null) {
+                items[i].render(g, offsetsX[i], offsetsY[i]);
+                continue;
+            }
+            Image image = images[i];
+            if (image != null) {
+                int c = i * 8;
+                g.drawImage(image, corners[c], corners[c + 1], corners[c + 2], corners[c + 3],
+                        corners[c + 4], corners[c + 5], corners[c + 6], corners[c + 7], null);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis.ui;
+
+import java.util.Arrays;
+
+/**
+ * Sorts render submissions by 64-bit keys made up of a layer, a depth and a
+ * source image id, so that a frame is drawn back to front and items drawing
+ * from the same image end up next to each other. Keys are sorted with a
+ * stable least significant digit radix sort over their bytes, so items with
+ * equal keys keep the order they were submitted in, and after the first few
+ * frames sorting allocates nothing.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class RenderSorter {
+
+    // BITS PER RADIX DIGIT AND THE NUMBER OF BUCKETS
+    private static final int RADIX_BITS = 8;
+    private static final int BUCKETS = 1 << RADIX_BITS;
+
+    // LAYOUT OF A KEY, FROM MOST TO LEAST SIGNIFICANT
+    private static final int LAYER_SHIFT = 48;
+    private static final int DEPTH_SHIFT = 16;
+    private static final long IMAGE_MASK = 0xFFFFL;
+
+    // SCRATCH ARRAYS FOR THE SORT
+    private long[] keyBuffer;
+    private Object[] itemBuffer;
+    private final int[] counts;
+
+    // NUMBER OF DIGIT PASSES WHICH ACTUALLY MOVED ANYTHING
+    private long passes;
+
+    /**
+     * Constructor
+     */
+    public RenderSorter() {
+        keyBuffer = new long[0];
+        itemBuffer = new Object[0];
+        counts = new int[BUCKETS];
+    }
+
+    /**
+     * Builds a sort key. Layers are compared first, then depth, which is
+     * usually the Y coordinate of an item's base so that lower items are drawn
+     * over higher ones, then the id of the image being drawn.
+     *
+     * @param layer the layer, between -32768 and 32767
+     * @param depth the depth within the layer, lower depths are drawn first
+     * @param imageId the id of the source image, of which only the lowest 16
+     * bits are used
+     * @return the sort key
+     */
+    public static long key(int layer, float depth, int imageId) {
+        if (layer < Short.MIN_VALUE || layer > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Layer " + layer + " out of range");
+        }
+        // FLIP THE FLOAT'S BITS SO THAT THEY COMPARE IN ORDER AS UNSIGNED
+        int bits = Float.floatToIntBits(depth);
+        bits ^= (bits >> 31) | 0x80000000;
+        return ((long) (layer - Short.MIN_VALUE) << LAYER_SHIFT)
+                | ((bits & 0xFFFFFFFFL) << DEPTH_SHIFT)
+                | (imageId & IMAGE_MASK);
+    }
+
+    /**
+     * Builds a sort key using the identity of the source image. For items
+     * drawing out of a TextureAtlas the source should be the atlas page, so
+     * that everything on the same page is grouped together.
+     *
+     * @param layer the layer, between -32768 and 32767
+     * @param depth the depth within the layer, lower depths are drawn first
+     * @param source the image being drawn from, or null
+     * @return the sort key
+     */
+    public static long key(int layer, float depth, Object source) {
+        return key(layer, depth, imageId(source));
+    }
+
+    /**
+     * Returns the id of a source image as used in a sort key. Different
+     * images may occasionally share an id, which only costs a missed batch.
+     *
+     * @param source the image being drawn from, or null
+     * @return the id of the image
+     */
+    public static int imageId(Object source) {
+        if (source == null) {
+            return 0;
+        }
+        int h = System.identityHashCode(source);
+        return (h ^ (h >>> 16)) & (int) IMAGE_MASK;
+    }
+
+    /**
+     * Returns the image id part of a sort key
+     *
+     * @param key the sort key
+     * @return the image id
+     */
+    public static int imageIdOf(long key) {
+        return (int) (key & IMAGE_MASK);
+    }
+
+    /**
+     * Returns the layer part of a sort key
+     *
+     * @param key the sort key
+     * @return the layer
+     */
+    public static int layerOf(long key) {
+        return (int) (key >>> LAYER_SHIFT) + Short.MIN_VALUE;
+    }
+
+    /**
+     * Sorts the first entries of two parallel arrays by key, in ascending
+     * order. Entries with equal keys keep their relative order.
+     *
+     * @param keys the sort keys
+     * @param items the items belonging to each key
+     * @param n the number of entries to sort
+     */
+    public void sort(long[] keys, Object[] items, int n) {
+        if (n > keys.length || n > items.length) {
+            throw new IllegalArgumentException("Cannot sort " + n + " entries");
+        }
+        if (n < 2) {
+            return;
+        }
+        if (keyBuffer.length < n) {
+            keyBuffer = new long[Math.max(n, keyBuffer.length * 2)];
+            itemBuffer = new Object[keyBuffer.length];
+        }
+
+        long[] srcKeys = keys;
+        Object[] srcItems = items;
+        long[] dstKeys = keyBuffer;
+        Object[] dstItems = itemBuffer;
+
+        for (int shift = 0; shift < 64; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) (srcKeys[i] >>> shift) & (BUCKETS - 1)]++;
+            }
+
+            // SKIP DIGITS WHICH ARE THE SAME FOR EVERY KEY
+            if (counts[(int) (srcKeys[0] >>> shift) & (BUCKETS - 1)] == n) {
+                continue;
+            }
+
+            int total = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                int c = counts[b];
+                counts[b] = total;
+                total += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = counts[(int) (srcKeys[i] >>> shift) & (BUCKETS - 1)]++;
+                dstKeys[pos] = srcKeys[i];
+                dstItems[pos] = srcItems[i];
+            }
+
+            long[] tk = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = tk;
+            Object[] ti = srcItems;
+            srcItems = dstItems;
+            dstItems = ti;
+            passes++;
+        }
+
+        // AN ODD NUMBER OF PASSES LEAVES THE RESULT IN THE SCRATCH ARRAYS
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcItems, 0, items, 0, n);
+        }
+        Arrays.fill(itemBuffer, 0, n, null);
+    }
+
+    /**
+     * Counts the runs of consecutive keys sharing the same image id, which is
+     * the number of times the renderer has to switch source images
+     *
+     * @param keys the sorted keys
+     * @param n the number of keys
+     * @return the number of runs
+     */
+    public static int countRuns(long[] keys, int n) {
+        int runs = n > 0 ? 1 : 0;
+        for (int i = 1; i < n; i++) {
+            if (imageIdOf(keys[i]) != imageIdOf(keys[i - 1])) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * @return The total number of digit passes which moved entries
+     */
+    public long getPasses() {
+        return passes;
+    }
+}
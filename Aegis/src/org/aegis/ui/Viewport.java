@@ -23,9 +23,13 @@
  */
 package org.aegis.ui;
 
+import java.awt.geom.Rectangle2D;
+
 /**
  * An item which functions as a movable frame within a larger world, keeping
- * track of its location within the world as updated
+ * track of its location within the world as updated. When rendering through a
+ * viewport, BoundedRenderItems which fall entirely outside of it are culled,
+ * and the viewport counts how many items were drawn and culled each frame.
  *
  * @author Rogue <Alice Q.>
  */
@@ -45,6 +49,13 @@ public class Viewport {
     private float minOffsetY;
     private float maxOffsetY;
 
+    // SCRATCH RECTANGLE FOR ITEM BOUNDS
+    private final Rectangle2D.Float bounds;
+
+    // CULLING STATISTICS FOR THE CURRENT FRAME
+    private int visible;
+    private int culled;
+
     /**
      * Constructor
      *
@@ -59,6 +70,8 @@ public class Viewport {
         minOffsetY = Float.MIN_VALUE;
         maxOffsetX = Float.MAX_VALUE;
         maxOffsetY = Float.MAX_VALUE;
+
+        bounds = new Rectangle2D.Float();
     }
 
     /**
@@ -145,6 +158,85 @@ public class Viewport {
         return worldY;
     }
 
+    /**
+     * @return The width of the viewport
+     */
+    public float getWidth() {
+        return vpWidth;
+    }
+
+    /**
+     * @return The height of the viewport
+     */
+    public float getHeight() {
+        return vpHeight;
+    }
+
+    /**
+     * Checks whether an area of the world overlaps the viewport
+     *
+     * @param x the x coordinate of the area within the world
+     * @param y the y coordinate of the area within the world
+     * @param width the width of the area
+     * @param height the height of the area
+     * @return true if any part of the area is inside the viewport
+     */
+    public boolean intersects(float x, float y, float width, float height) {
+        return x < worldX + vpWidth && x + width > worldX
+                && y < worldY + vpHeight && y + height > worldY;
+    }
+
+    /**
+     * Checks whether an item being rendered at a given offset would appear
+     * inside the viewport, where the offset is the one passed to render() and
+     * already includes the viewport's own position. Items without bounds are
+     * always visible. The result is counted towards the current frame's
+     * statistics.
+     *
+     * @param item the item to check
+     * @param offsetX the X offset the item is rendered at
+     * @param offsetY the Y offset the item is rendered at
+     * @return false if the item should be culled
+     */
+    public boolean isVisible(RenderItem item, float offsetX, float offsetY) {
+        if (!(item instanceof BoundedRenderItem)) {
+            visible++;
+            return true;
+        }
+        ((BoundedRenderItem) item).getBounds(bounds);
+        float x = bounds.x + offsetX;
+        float y = bounds.y + offsetY;
+        if (x < vpWidth && x + bounds.width > 0 && y < vpHeight && y + bounds.height > 0) {
+            visible++;
+            return true;
+        }
+        culled++;
+        return false;
+    }
+
+    /**
+     * Resets the culling statistics at the start of a new frame
+     */
+    public void beginFrame() {
+        visible = 0;
+        culled = 0;
+    }
+
+    /**
+     * @return The number of items checked and drawn since the start of the
+     * frame
+     */
+    public int getVisibleCount() {
+        return visible;
+    }
+
+    /**
+     * @return The number of items culled since the start of the frame
+     */
+    public int getCulledCount() {
+        return culled;
+    }
+
     /**
      * Sets the maximum and minimum offsets for the viewport, guaranteeing that
      * the viewport will never be offset outside this range. By default, these
@@ -0,0 +1,361 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis2d;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import javax.swing.JFrame;
+import org.aegis.ui.GameGraphics;
+import org.aegis.ui.RenderItem;
+import org.aegis.ui.RenderList;
+import org.aegis.ui.Viewport;
+
+/**
+ * Graphics system which renders actively on the game thread through a Canvas
+ * BufferStrategy, rather than asking Swing to repaint. Every call to update()
+ * draws the frame and shows it right away, skipping the RepaintManager and
+ * the event dispatch thread, so the time each frame reaches the screen is
+ * known. Since the Canvas ignores repaints, the game window has to be shown
+ * separately once the game starts.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class ActiveGraphics extends Canvas implements GameGraphics {
+
+    // DEFAULT NUMBER OF BUFFERS
+    public static final int DEFAULT_BUFFERS = 2;
+
+    // NUMBER OF PRESENT TIMES KEPT
+    public static final int PRESENT_HISTORY = 120;
+
+    // BACKGROUND ITEM
+    private RenderItem background;
+
+    // PRIMARY RENDERLIST CONTAINING ALL OF THE GAME'S RENDER ITEMS
+    private final RenderList renderlist;
+
+    // WHETHER THE RENDERLIST HAS BEEN DRAWN SINCE IT WAS LAST CHANGED
+    private boolean presented;
+
+    // THE MAIN GAME WINDOW
+    private JFrame gameWindow;
+
+    // VIEWPORT ITEMS ARE DRAWN THROUGH, OR NULL TO DRAW AT THE ORIGIN
+    private volatile Viewport viewport;
+
+    // BUFFER STRATEGY, CREATED THE FIRST TIME THE CANVAS IS DISPLAYABLE
+    private BufferStrategy strategy;
+    private int buffers;
+
+    // WHETHER OR NOT TO FLUSH THE WINDOWING SYSTEM AFTER EVERY PRESENT
+    private boolean sync;
+
+    // RING OF PRESENT TIMES
+    private final long[] presents;
+    private volatile long presentCount;
+
+    // STATISTICS
+    private volatile long lostFrames;
+    private volatile long restoredFrames;
+
+    /**
+     * Constructor for double buffered rendering
+     *
+     * @param title the title to display on the game window
+     * @param initWidth the initial width
+     * @param initHeight the initial height
+     */
+    public ActiveGraphics(String title, int initWidth, int initHeight) {
+        this(title, initWidth, initHeight, DEFAULT_BUFFERS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param title the title to display on the game window
+     * @param initWidth the initial width
+     * @param initHeight the initial height
+     * @param buffers 2 for double buffering or 3 for triple buffering
+     */
+    public ActiveGraphics(String title, int initWidth, int initHeight, int buffers) {
+        setBuffers(buffers);
+        this.renderlist = new RenderList();
+        this.presents = new long[PRESENT_HISTORY];
+        this.sync = true;
+
+        setIgnoreRepaint(true);
+        gameWindow = new GameWindow(title, initWidth, initHeight);
+        gameWindow.setIgnoreRepaint(true);
+        gameWindow.add(this);
+    }
+
+    /**
+     * Returns the game's window container
+     *
+     * @return the game's window container
+     */
+    public JFrame getWindow() {
+        return gameWindow;
+    }
+
+    /**
+     * Shows the game's window
+     */
+    @Override
+    public void display() {
+        gameWindow.setVisible(true);
+    }
+
+    /**
+     * Method to set the background RenderItem. This is the first item rendered
+     * on-screen and should represent the background.
+     *
+     * @param bgColor the background color behind the item
+     * @param bgItem the RenderItem to use as the background
+     */
+    public void setBackground(Color bgColor, RenderItem bgItem) {
+        setBackground(bgColor);
+        background = bgItem;
+    }
+
+    /**
+     * Sets the viewport the world is drawn through. Items are drawn offset by
+     * the viewport's position and BoundedRenderItems outside of it are culled.
+     *
+     * @param viewport the viewport, or null to draw everything at the origin
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * @return The viewport the world is drawn through, or null if there is
+     * none
+     */
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Sets the number of buffers to use. The buffer strategy is recreated the
+     * next time a frame is rendered.
+     *
+     * @param buffers 2 for double buffering or 3 for triple buffering
+     */
+    public final synchronized void setBuffers(int buffers) {
+        if (buffers != 2 && buffers != 3) {
+            throw new IllegalArgumentException("Only double or triple buffering is supported");
+        }
+        this.buffers = buffers;
+        this.strategy = null;
+    }
+
+    /**
+     * @return The number of buffers in use
+     */
+    public int getBuffers() {
+        return buffers;
+    }
+
+    /**
+     * Sets whether or not to flush the windowing system after every present.
+     * This is on by default, since some systems otherwise queue frames and
+     * show them late.
+     *
+     * @param sync true to flush after every present
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Queues an item for rendering in the next available pass
+     *
+     * @param item the RenderItem to add
+     */
+    @Override
+    public void addToRenderList(RenderItem item) {
+        synchronized (renderlist) {
+            if (presented) {
+                renderlist.clear();
+                presented = false;
+            }
+            renderlist.add(item);
+        }
+    }
+
+    @Override
+    public void discardRenderList() {
+        synchronized (renderlist) {
+            renderlist.clear();
+            presented = false;
+        }
+    }
+
+    /**
+     * Renders the background and everything in the render list into the back
+     * buffer and shows it. If the buffers are lost while rendering the frame
+     * is drawn again. Nothing is drawn until the window is displayable. The
+     * items stay queued, so they're shown again if nothing new is queued
+     * before the next update, but the next item queued starts a new list, so
+     * a persistent item must be re-added every frame
+     */
+    @Override
+    public final synchronized void update() {
+        if (!isDisplayable() || getWidth() <= 0 || getHeight() <= 0) {
+            synchronized (renderlist) {
+                presented = true;
+            }
+            return;
+        }
+
+        if (strategy == null) {
+            createBufferStrategy(buffers);
+            strategy = getBufferStrategy();
+        }
+
+        synchronized (renderlist) {
+            boolean lost;
+            do {
+                boolean restored;
+                do {
+                    Graphics g = strategy.getDrawGraphics();
+                    try {
+                        render(g);
+                    } finally {
+                        g.dispose();
+                    }
+
+                    // THE BUFFERS WERE RESTORED WHILE DRAWING, SO DRAW AGAIN
+                    restored = strategy.contentsRestored();
+                    if (restored) {
+                        restoredFrames++;
+                    }
+                } while (restored);
+
+                strategy.show();
+
+                // THE BUFFERS WERE LOST BEFORE THEY COULD BE SHOWN, SO START OVER
+                lost = strategy.contentsLost();
+                if (lost) {
+                    lostFrames++;
+                }
+            } while (lost);
+            presented = true;
+        }
+
+        if (sync) {
+            Toolkit.getDefaultToolkit().sync();
+        }
+
+        long count = presentCount;
+        presents[(int) (count % PRESENT_HISTORY)] = System.nanoTime();
+        presentCount = count + 1;
+    }
+
+    /**
+     * Draws a single frame
+     *
+     * @param g the graphics to draw onto
+     */
+    private void render(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (background != null) {
+            background.render(g, 0, 0);
+        }
+        Viewport vp = viewport;
+        if (vp == null) {
+            renderlist.render(g, 0, 0);
+        } else {
+            vp.beginFrame();
+            renderlist.render(g, -vp.getOffsetX(), -vp.getOffsety(), vp);
+        }
+    }
+
+    /**
+     * @return The number of frames shown so far
+     */
+    public long getPresentCount() {
+        return presentCount;
+    }
+
+    /**
+     * @return The System.nanoTime() at which the last frame was shown, or 0 if
+     * nothing has been shown yet
+     */
+    public long getLastPresentTime() {
+        long count = presentCount;
+        return count == 0 ? 0 : presents[(int) ((count - 1) % PRESENT_HISTORY)];
+    }
+
+    /**
+     * Returns the times at which the most recent frames were shown, from
+     * oldest to newest
+     *
+     * @return the System.nanoTime() of up to PRESENT_HISTORY presents
+     */
+    public synchronized long[] getPresentTimes() {
+        long count = presentCount;
+        int n = (int) Math.min(count, PRESENT_HISTORY);
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) {
+            times[i] = presents[(int) ((count - n + i) % PRESENT_HISTORY)];
+        }
+        return times;
+    }
+
+    /**
+     * @return The average time between the most recent presents, in
+     * nanoseconds
+     */
+    public double getAveragePresentInterval() {
+        long[] times = getPresentTimes();
+        return times.length < 2 ? 0 : (double) (times[times.length - 1] - times[0]) / (times.length - 1);
+    }
+
+    /**
+     * @return The number of frames which were drawn again because the buffers
+     * were restored while drawing
+     */
+    public long getRestoredFrames() {
+        return restoredFrames;
+    }
+
+    /**
+     * @return The number of frames which were drawn again because the buffers
+     * were lost when showing them
+     */
+    public long getLostFrames() {
+        return lostFrames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[ActiveGraphics %d buffers\t%d presents\t%.3fms interval\t%d lost]", buffers, presentCount, getAveragePresentInterval() / 1000000, lostFrames + restoredFrames);
+    }
+}
@@ -51,8 +51,11 @@ public class Aegis2DGame extends AegisGame {
         set(new GameSceneManager(this));
     }
 
-    @Override
-    public Aegis2DGraphics getGraphics() {
-        return super.getGraphics();
+    /**
+     * @return the windowed graphics system being used by the game, or null if
+     * it has been replaced by a different kind of GameGraphics
+     */
+    public Aegis2DGraphics get2DGraphics() {
+        return graphics instanceof Aegis2DGraphics ? (Aegis2DGraphics) graphics : null;
     }
 }
@@ -25,29 +25,94 @@ package org.aegis2d;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import org.aegis.data.FrameCapture;
+import org.aegis.data.ImageIngestor;
+import org.aegis.data.TripleBuffer;
+import org.aegis.ui.BoundedRenderItem;
+import org.aegis.ui.DirtyRegionTracker;
 import org.aegis.ui.GameGraphics;
+import org.aegis.ui.PipelinedRenderer;
 import org.aegis.ui.RenderItem;
 import org.aegis.ui.RenderList;
+import org.aegis.ui.Viewport;
 
 /**
  * Class which contains the game's main addToRender lists and uses a Swing
- * implementation for its primary addToRendering capabilities
+ * implementation for its primary addToRendering capabilities. Items are queued
+ * into a back render list which is swapped with the one being painted every
+ * update, so queueing never waits on painting and every paint draws one
+ * complete frame.
  *
  * @author Rogue <Alice Q.>
  */
 public class Aegis2DGraphics extends JPanel implements GameGraphics {
 
     // BACKGROUND ITEM
-    private RenderItem background;
+    private volatile RenderItem background;
 
-    // PRIMARY RENDERLIST CONTAINING ALL OF THE GAME'S RENder ITEMS
-    private final RenderList renderlist;
+    // FRAMES SWAPPED BETWEEN THE GAME THREAD AND THE PAINTING THREAD
+    private final TripleBuffer<Frame> frames;
+
+    // WHETHER A NEW FRAME HAS BEEN STARTED SINCE THE LAST UPDATE
+    private boolean queued;
+
+    // VIEWPORT ITEMS ARE DRAWN THROUGH, OR NULL TO DRAW AT THE ORIGIN
+    private volatile Viewport viewport;
 
     // THE MAIN GAME WINDOW
     private JFrame gameWindow;
 
+    // RENDERER RUNNING ON ITS OWN THREAD, NULL UNLESS PIPELINING IS ENABLED
+    private volatile PipelinedRenderer pipeline;
+
+    // DIRTY-REGION RENDERING
+    // - WHETHER OR NOT IT'S ON
+    // - SCREEN AREAS WAITING TO BE REDRAWN, FILLED BY THE GAME THREAD AND EMPTIED WHEN PAINTING
+    // - THE TRACKER ITEMS REPORT CHANGES IN THEIR APPEARANCE TO
+    // - LOCK HELD WHILE A FRAME AND ITS DAMAGE ARE HANDED OVER OR TAKEN
+    private volatile boolean dirty;
+    private final DirtyRegionTracker pending;
+    private volatile DirtyRegionTracker reported;
+    private final Object damageLock;
+
+    // GAME THREAD SIDE OF DIRTY-REGION RENDERING
+    // - THE PREVIOUS FRAME'S ITEMS, THEIR SCREEN BOUNDS AND ITS OFFSET
+    // - DAMAGE FOUND IN THE CURRENT FRAME
+    private RenderItem[] lastItems;
+    private float[] lastBounds;
+    private int lastCount;
+    private float lastOffsetX;
+    private float lastOffsetY;
+    private final DirtyRegionTracker damage;
+    private final Rectangle2D.Float scratch;
+
+    // PAINTING SIDE OF DIRTY-REGION RENDERING
+    // - THE PERSISTENT IMAGE ONLY DAMAGED AREAS ARE REDRAWN INTO
+    // - THE AREAS BEING REDRAWN
+    private BufferedImage backbuffer;
+    private final List<Rectangle> damaged;
+    private volatile long redrawnPixels;
+
+    // SOFTWARE RASTERIZER FRAMES ARE DRAWN WITH, OR NULL TO DRAW THROUGH JAVA2D
+    private volatile TileRasterizer rasterizer;
+
+    // FRAME CAPTURE
+    // - RECEIVES A COPY OF EVERY PAINTED FRAME, OR NULL IF NOT CAPTURING
+    // - IMAGE FRAMES ARE DRAWN INTO FIRST WHEN THEY'D OTHERWISE GO STRAIGHT TO THE SCREEN
+    private volatile FrameCapture capture;
+    private BufferedImage captured;
+
     /**
      * Constructor
      *
@@ -56,7 +121,15 @@ public class Aegis2DGraphics extends JPanel implements GameGraphics {
      * @param initHeight the initial height
      */
     public Aegis2DGraphics(String title, int initWidth, int initHeight) {
-        renderlist = new RenderList();
+        frames = new TripleBuffer(new Frame(), new Frame(), new Frame());
+        pending = new DirtyRegionTracker();
+        reported = DirtyRegionTracker.SHARED;
+        damageLock = new Object();
+        lastItems = new RenderItem[0];
+        lastBounds = new float[0];
+        damage = new DirtyRegionTracker();
+        scratch = new Rectangle2D.Float();
+        damaged = new ArrayList();
         gameWindow = new GameWindow(title, initWidth, initHeight);
         gameWindow.add(this);
     }
@@ -84,6 +157,14 @@ public class Aegis2DGraphics extends JPanel implements GameGraphics {
         return gameWindow;
     }
 
+    /**
+     * Shows the game's window
+     */
+    @Override
+    public void display() {
+        gameWindow.setVisible(true);
+    }
+
     /**
      * Method to set the background RenderItem. This is the first item
      * addToRendered on-screen and should represent the background.
@@ -94,39 +175,545 @@ public class Aegis2DGraphics extends JPanel implements GameGraphics {
     public void setBackground(Color bgColor, Decal bgDecal) {
         gameWindow.setBackground(bgColor);
         background = bgDecal;
+        if (pipeline != null) {
+            pipeline.setBackground(bgColor, bgDecal);
+        }
+    }
+
+    /**
+     * Turns pipelined rendering on or off. When on, every frame is drawn into
+     * an offscreen image on a dedicated render thread while the game thread
+     * builds the next one, and painting simply shows the latest finished
+     * image. Items which draw a single image, such as Decals and Sprite2Ds,
+     * have what they draw copied when the frame is handed off. Any other item
+     * added to the render list must not be changed until the frame after it
+     * was added.
+     *
+     * @param on true in order to render on a separate thread, false to render
+     * while painting
+     */
+    public synchronized void setPipelined(boolean on) {
+        if (on && pipeline == null) {
+            PipelinedRenderer renderer = new PipelinedRenderer(new Runnable() {
+
+                @Override
+                public void run() {
+                    repaint();
+                }
+            });
+            renderer.setBackground(gameWindow.getBackground(), background);
+            renderer.setCapture(capture);
+            renderer.start();
+            frames.getBack().items.clear();
+            pipeline = renderer;
+        } else if (!on && pipeline != null) {
+            pipeline.stop();
+            pipeline = null;
+        }
     }
 
     /**
-     * Queues an item for addToRendering in the next available pass
+     * Turns dirty-region rendering on or off. When on, frames are drawn into a
+     * persistent image and only the areas which changed since the last paint
+     * are redrawn: wherever items were added, removed or moved between frames,
+     * along with whatever DynamicDecals and Sprite2Ds report to the damage
+     * tracker. Other items which change their appearance need to report it
+     * themselves, and a frame containing any item which isn't a
+     * BoundedRenderItem is always redrawn in full. This has no effect while
+     * pipelining.
+     *
+     * @param on true in order to only redraw damaged areas
+     */
+    public synchronized void setDirtyRendering(boolean on) {
+        dirty = on;
+        reported.setEnabled(on);
+        pending.damageAll();
+    }
+
+    /**
+     * Sets the tracker items report changes in their appearance to. This is
+     * the shared DirtyRegionTracker by default, so when more than one
+     * Aegis2DGraphics renders dirty regions each should be given its own,
+     * along with the items drawn through it.
+     *
+     * @param tracker the tracker to collect reported damage from
+     */
+    public synchronized void setDamageTracker(DirtyRegionTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("A damage tracker is required");
+        }
+        if (dirty) {
+            reported.setEnabled(false);
+            tracker.setEnabled(true);
+        }
+        reported = tracker;
+        pending.damageAll();
+    }
+
+    /**
+     * @return The tracker items report changes in their appearance to
+     */
+    public DirtyRegionTracker getDamageTracker() {
+        return reported;
+    }
+
+    /**
+     * @return True if only damaged areas are redrawn
+     */
+    public boolean isDirtyRendering() {
+        return dirty;
+    }
+
+    /**
+     * @return The number of pixels redrawn by the last paint in dirty-region
+     * mode
+     */
+    public long getRedrawnPixels() {
+        return redrawnPixels;
+    }
+
+    /**
+     * Sets a software rasterizer to draw frames with, which renders the frame
+     * in tiles spread across several threads and then draws it all at once.
+     * Items are then clipped to the window rather than culled against the
+     * viewport. This has no effect while pipelining or rendering dirty
+     * regions.
+     *
+     * @param rasterizer the rasterizer, or null to draw through Java2D
+     */
+    public void setRasterizer(TileRasterizer rasterizer) {
+        this.rasterizer = rasterizer;
+    }
+
+    /**
+     * @return The software rasterizer frames are drawn with, or null if they
+     * are drawn through Java2D
+     */
+    public TileRasterizer getRasterizer() {
+        return rasterizer;
+    }
+
+    /**
+     * Sets where a copy of every painted frame is sent to be recorded. When
+     * pipelining, frames are copied on the render thread as they're
+     * finished, otherwise they're copied while painting, and frames which
+     * would be drawn straight to the screen are drawn into an image first.
+     *
+     * @param capture the capture to send frames to, or null to stop sending
+     * them
+     */
+    public void setCapture(FrameCapture capture) {
+        this.capture = capture;
+        PipelinedRenderer renderer = pipeline;
+        if (renderer != null) {
+            renderer.setCapture(capture);
+        }
+    }
+
+    /**
+     * @return The capture frames are sent to, or null if there is none
+     */
+    public FrameCapture getCapture() {
+        return capture;
+    }
+
+    /**
+     * Sets the viewport the world is drawn through. Items are drawn offset by
+     * the viewport's position at the time of the update, and
+     * BoundedRenderItems outside of it are culled. When pipelining, this
+     * happens as items are queued instead.
+     *
+     * @param viewport the viewport, or null to draw everything at the origin
+     */
+    public void setViewport(Viewport viewport) {
+        this.viewport = viewport;
+    }
+
+    /**
+     * @return The viewport the world is drawn through, or null if there is
+     * none
+     */
+    public Viewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * @return True if frames are being rendered on a separate thread
+     */
+    public boolean isPipelined() {
+        return pipeline != null;
+    }
+
+    /**
+     * @return The renderer used when pipelining is on, or null if it's off
+     */
+    public PipelinedRenderer getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Queues an item for addToRendering in the next available pass. This never
+     * blocks, but must only be called from the game thread.
      *
      * @param item the RenderItem to add
      */
-    public synchronized void addToRenderList(RenderItem item) {
-        renderlist.add(item);
+    @Override
+    public void addToRenderList(RenderItem item) {
+        queued = true;
+        PipelinedRenderer renderer = pipeline;
+        if (renderer != null) {
+            Viewport vp = viewport;
+            if (vp == null) {
+                renderer.submit(item, 0, 0);
+            } else if (vp.isVisible(item, -vp.getOffsetX(), -vp.getOffsety())) {
+                renderer.submit(item, -vp.getOffsetX(), -vp.getOffsety());
+            }
+            return;
+        }
+        frames.getBack().items.add(item);
+    }
+
+    @Override
+    public void discardRenderList() {
+        queued = true;
+        PipelinedRenderer renderer = pipeline;
+        if (renderer != null) {
+            renderer.discard();
+            Viewport vp = viewport;
+            if (vp != null) {
+                vp.beginFrame();
+            }
+            return;
+        }
+        frames.getBack().items.clear();
     }
 
     /**
-     * Renders everything contained in the game and GUI addToRender lists, as
-     * well as the background. The GUI addToRender list is always addToRendered
-     * on top of the game addToRender list. Please note that this removes the
-     * item from the addToRender lists, so a persistent item must be re-added
-     * every frame
+     * Hands everything queued since the last update to the painting thread as
+     * a complete frame and requests a repaint. Please note that this empties
+     * the render list, so a persistent item must be re-added every frame. If
+     * nothing has been queued or discarded since the last update, nothing is
+     * handed over and the last frame stays on screen.
      */
     @Override
     public final void update() {
+        if (!queued) {
+            return;
+        }
+        queued = false;
+
+        PipelinedRenderer renderer = pipeline;
+        if (renderer != null) {
+            // THE RENDER THREAD REQUESTS THE REPAINT ONCE IT'S DONE
+            renderer.publish(getWidth(), getHeight());
+            return;
+        }
+
+        Frame frame = frames.getBack();
+        Viewport vp = viewport;
+        frame.offsetX = vp == null ? 0 : -vp.getOffsetX();
+        frame.offsetY = vp == null ? 0 : -vp.getOffsety();
+        boolean damaging = dirty;
+        frame.measured = damaging;
+        if (damaging) {
+            findDamage(frame);
+        }
+
+        // THE NEW BACK FRAME IS EITHER AN OLD FRAME OR ONE THAT WAS NEVER PAINTED.
+        // DAMAGE IS HANDED OVER ALONG WITH ITS FRAME, SO THAT A PAINT NEVER
+        // SPENDS ONE FRAME'S DAMAGE ON ANOTHER ONE
+        if (damaging) {
+            synchronized (damageLock) {
+                frames.publish().items.clear();
+                damage.drainTo(pending, 0, 0);
+            }
+        } else {
+            frames.publish().items.clear();
+        }
         if (gameWindow.isVisible()) {
             gameWindow.repaint();
         }
     }
-    
+
+    /**
+     * Works out which areas of the screen changed between the previous frame
+     * and this one, and records the screen bounds of this frame's items
+     *
+     * @param frame the frame about to be published
+     */
+    private void findDamage(Frame frame) {
+        int count = frame.items.size();
+        if (frame.bounds.length < count * 4) {
+            frame.bounds = new float[count * 8];
+        }
+
+        // SCREEN BOUNDS OF EVERY ITEM, NaN FOR ITEMS WITHOUT BOUNDS
+        frame.unbounded = false;
+        for (int i = 0; i < count; i++) {
+            RenderItem item = frame.items.get(i);
+            int b = i * 4;
+            if (item instanceof BoundedRenderItem) {
+                ((BoundedRenderItem) item).getBounds(scratch);
+                frame.bounds[b] = scratch.x + frame.offsetX;
+                frame.bounds[b + 1] = scratch.y + frame.offsetY;
+                frame.bounds[b + 2] = scratch.width;
+                frame.bounds[b + 3] = scratch.height;
+            } else {
+                frame.bounds[b] = Float.NaN;
+                frame.unbounded = true;
+            }
+        }
+
+        if (frame.unbounded || frame.offsetX != lastOffsetX || frame.offsetY != lastOffsetY) {
+            // EVERYTHING MOVED OR THERE'S NO TELLING WHAT CHANGED
+            damage.damageAll();
+            reported.clear();
+        } else {
+            // ANY ITEM WHICH ISN'T THE SAME OR IN THE SAME PLACE DAMAGES ITS OLD AND NEW AREA
+            for (int i = 0; i < Math.max(count, lastCount); i++) {
+                int b = i * 4;
+                boolean same = i < count && i < lastCount
+                        && frame.items.get(i) == lastItems[i]
+                        && frame.bounds[b] == lastBounds[b]
+                        && frame.bounds[b + 1] == lastBounds[b + 1]
+                        && frame.bounds[b + 2] == lastBounds[b + 2]
+                        && frame.bounds[b + 3] == lastBounds[b + 3];
+                if (same) {
+                    continue;
+                }
+                if (i < lastCount) {
+                    damage.damage(lastBounds[b], lastBounds[b + 1], lastBounds[b + 2], lastBounds[b + 3]);
+                }
+                if (i < count) {
+                    damage.damage(frame.bounds[b], frame.bounds[b + 1], frame.bounds[b + 2], frame.bounds[b + 3]);
+                }
+            }
+            reported.drainTo(damage, frame.offsetX, frame.offsetY);
+        }
+
+        // REMEMBER THIS FRAME FOR THE NEXT ONE
+        if (lastItems.length < count) {
+            lastItems = new RenderItem[frame.items.capacity()];
+            lastBounds = new float[lastItems.length * 4];
+        }
+        if (lastCount > count) {
+            Arrays.fill(lastItems, count, lastCount, null);
+        }
+        for (int i = 0; i < count; i++) {
+            lastItems[i] = frame.items.get(i);
+        }
+        System.arraycopy(frame.bounds, 0, lastBounds, 0, count * 4);
+        lastCount = count;
+        lastOffsetX = frame.offsetX;
+        lastOffsetY = frame.offsetY;
+    }
+
+    /**
+     * Paints the most recent complete frame, or the previous one again if
+     * nothing new has been published. This must only be called from the event
+     * dispatch thread.
+     *
+     * @param g the graphics to paint onto
+     */
     @Override
-    public final synchronized void paintComponent(Graphics g) {
-        if (background != null) {
-            background.render(g, 0, 0);
+    public final void paintComponent(Graphics g) {
+        PipelinedRenderer renderer = pipeline;
+        if (renderer != null) {
+            BufferedImage frame = renderer.getFrame();
+            if (frame != null) {
+                g.drawImage(frame, 0, 0, null);
+            }
+            return;
+        }
+
+        if (dirty) {
+            paintDirty(g);
+            return;
+        }
+
+        TileRasterizer tiles = rasterizer;
+        if (tiles != null) {
+            paintTiled(g, tiles);
+            return;
+        }
+
+        FrameCapture c = capture;
+        if (c != null) {
+            paintCaptured(g, c);
+            return;
+        }
+
+        paintFrame(g);
+    }
+
+    /**
+     * Draws the background and the most recent complete frame
+     *
+     * @param g the graphics to draw with
+     */
+    private void paintFrame(Graphics g) {
+        RenderItem bg = background;
+        if (bg != null) {
+            bg.render(g, 0, 0);
         }
-        for (RenderItem item : renderlist) {
-            item.render(g, 0, 0);
+        frames.consume();
+        Frame frame = frames.getFront();
+        Viewport vp = viewport;
+        if (vp != null) {
+            vp.beginFrame();
         }
-        renderlist.clear();
+        frame.items.render(g, frame.offsetX, frame.offsetY, vp);
+    }
+
+    /**
+     * Paints the most recent complete frame by drawing it into an image,
+     * which is then sent to be captured and painted
+     *
+     * @param g the graphics to paint onto
+     * @param c the capture to send the frame to
+     */
+    private void paintCaptured(Graphics g, FrameCapture c) {
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+        if (captured == null || captured.getWidth() != width || captured.getHeight() != height) {
+            captured = ImageIngestor.createCompatible(width, height, Transparency.OPAQUE);
+        }
+        Graphics2D g2 = captured.createGraphics();
+        try {
+            g2.setColor(gameWindow.getBackground());
+            g2.fillRect(0, 0, width, height);
+            paintFrame(g2);
+        } finally {
+            g2.dispose();
+        }
+        c.capture(captured);
+        g.drawImage(captured, 0, 0, null);
+    }
+
+    /**
+     * Paints the most recent complete frame through the software rasterizer
+     *
+     * @param g the graphics to paint onto
+     * @param tiles the rasterizer
+     */
+    private void paintTiled(Graphics g, TileRasterizer tiles) {
+        frames.consume();
+        Frame frame = frames.getFront();
+        BufferedImage image = tiles.rasterize(background, frame.items, frame.offsetX, frame.offsetY, getWidth(), getHeight(), gameWindow.getBackground());
+        FrameCapture c = capture;
+        if (c != null) {
+            c.capture(image);
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Redraws the damaged areas of the most recent complete frame into the
+     * persistent image and paints it. All of the areas are clipped to at once,
+     * so every item overlapping any of them is drawn exactly once.
+     *
+     * @param g the graphics to paint onto
+     */
+    private void paintDirty(Graphics g) {
+        Frame frame;
+        boolean full;
+        damaged.clear();
+        synchronized (damageLock) {
+            frames.consume();
+            frame = frames.getFront();
+            full = pending.drain(damaged);
+        }
+        int width = Math.max(1, getWidth());
+        int height = Math.max(1, getHeight());
+
+        if (backbuffer == null || backbuffer.getWidth() != width || backbuffer.getHeight() != height) {
+            backbuffer = ImageIngestor.createCompatible(width, height, Transparency.OPAQUE);
+            full = true;
+        }
+        if (full) {
+            damaged.clear();
+            damaged.add(new Rectangle(0, 0, width, height));
+        }
+
+        long pixels = 0;
+        Rectangle screen = new Rectangle(0, 0, width, height);
+        List<Rectangle> areas = new ArrayList(damaged.size());
+        Path2D.Float clip = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        for (Rectangle r : damaged) {
+            Rectangle area = r.intersection(screen);
+            if (!area.isEmpty()) {
+                pixels += (long) area.width * area.height;
+                areas.add(area);
+                clip.append(area, false);
+            }
+        }
+        redrawnPixels = pixels;
+
+        if (!areas.isEmpty()) {
+            Graphics2D g2 = backbuffer.createGraphics();
+            try {
+                g2.setClip(areas.size() == 1 ? areas.get(0) : clip);
+                g2.setColor(gameWindow.getBackground());
+                for (Rectangle area : areas) {
+                    g2.fillRect(area.x, area.y, area.width, area.height);
+                }
+                RenderItem bg = background;
+                if (bg != null) {
+                    bg.render(g2, 0, 0);
+                }
+
+                // ONLY ITEMS OVERLAPPING ONE OF THE AREAS NEED TO BE DRAWN
+                int count = frame.items.size();
+                boolean measured = frame.measured;
+                for (int i = 0; i < count; i++) {
+                    int b = i * 4;
+                    if (!measured || Float.isNaN(frame.bounds[b])
+                            || overlaps(areas, frame.bounds[b], frame.bounds[b + 1], frame.bounds[b + 2], frame.bounds[b + 3])) {
+                        frame.items.get(i).render(g2, frame.offsetX, frame.offsetY);
+                    }
+                }
+            } finally {
+                g2.dispose();
+            }
+        }
+
+        FrameCapture c = capture;
+        if (c != null) {
+            c.capture(backbuffer);
+        }
+        g.drawImage(backbuffer, 0, 0, null);
+    }
+
+    /**
+     * Checks whether a set of screen bounds overlaps any of a list of areas
+     *
+     * @param areas the areas to check against
+     * @param x the left edge of the bounds
+     * @param y the top edge of the bounds
+     * @param w the width of the bounds
+     * @param h the height of the bounds
+     * @return true if the bounds overlap at least one area, false otherwise
+     */
+    private static boolean overlaps(List<Rectangle> areas, float x, float y, float w, float h) {
+        for (Rectangle area : areas) {
+            if (x < area.x + area.width && x + w > area.x && y < area.y + area.height && y + h > area.y) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A single frame's render list along with the offset to draw it at, and
+     * the screen bounds of each item when rendering dirty regions
+     */
+    private static class Frame {
+
+        private final RenderList items = new RenderList();
+        private float offsetX;
+        private float offsetY;
+        private float[] bounds = new float[0];
+        private boolean unbounded;
+        private boolean measured;
     }
 }
@@ -24,10 +24,13 @@
 package org.aegis2d;
 
 import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collection;
-import org.aegis.ui.RenderItem;
+import org.aegis.ui.BoundedRenderItem;
+import org.aegis.ui.ImageRenderItem;
 
 /**
  * Similar to the Decal class, this is a RenderItem wrapper for an animated
@@ -35,7 +38,7 @@ import org.aegis.ui.RenderItem;
  *
  * @author Rogue <Alice Q>
  */
-public class AnimatedGraphic implements RenderItem {
+public class AnimatedGraphic implements BoundedRenderItem, ImageRenderItem {
 
     // THE CURRENT FRAME WE'RE ON
     private int frameNum;
@@ -87,10 +90,48 @@ public class AnimatedGraphic implements RenderItem {
      * @return the number of frames in the animation
      */
     public int addFrame(Decal decal, int duration) {
+        if (decal.getRegion() != null) {
+            return addFrame(decal.getRegion(), duration);
+        }
         frames.add(new Frame(decal.getImage(), duration));
         return frames.size();
     }
 
+    /**
+     * Adds a frame to the end of the animation which renders from a region of
+     * a TextureAtlas
+     *
+     * @param region the atlas region to display
+     * @param duration the amount of time to display it for
+     * @return the number of frames in the animation
+     */
+    public int addFrame(AtlasRegion region, int duration) {
+        Frame frame = new Frame(null, duration);
+        frame.region = region;
+        frames.add(frame);
+        return frames.size();
+    }
+
+    /**
+     * Moves the image of every frame which doesn't render from an atlas yet
+     * into a TextureAtlas, after which the frames render from the atlas and no
+     * longer hold on to their own images
+     *
+     * @param atlas the atlas to pack the frames into
+     * @return the number of frames packed
+     */
+    public int packInto(TextureAtlas atlas) {
+        int packed = 0;
+        for (Frame frame : frames) {
+            if (frame.region == null) {
+                frame.region = atlas.add(frame.image);
+                frame.image = null;
+                packed++;
+            }
+        }
+        return packed;
+    }
+
     /**
      * Adds a Collection of multiple frames to the end of the animation
      *
@@ -121,6 +162,20 @@ public class AnimatedGraphic implements RenderItem {
         return frames.size();
     }
 
+    /**
+     * @return The width of the current frame, or 0 if there are no frames
+     */
+    public int getWidth() {
+        return frames.isEmpty() ? 0 : frames.get(frameNum).getWidth();
+    }
+
+    /**
+     * @return The height of the current frame, or 0 if there are no frames
+     */
+    public int getHeight() {
+        return frames.isEmpty() ? 0 : frames.get(frameNum).getHeight();
+    }
+
     /**
      * Returns the current frame the animation is on
      *
@@ -162,9 +217,44 @@ public class AnimatedGraphic implements RenderItem {
         }
     }
 
+    /**
+     * Returns the area covered by the current frame, which is empty if there
+     * are no frames
+     *
+     * @param out the rectangle to store the bounds in
+     * @return the same rectangle, holding the current frame's bounds
+     */
+    @Override
+    public Rectangle2D.Float getBounds(Rectangle2D.Float out) {
+        if (frames.isEmpty()) {
+            out.setRect(0, 0, 0, 0);
+        } else {
+            Frame frame = frames.get(frameNum);
+            out.setRect(0, 0, frame.getWidth(), frame.getHeight());
+        }
+        return out;
+    }
+
     @Override
     public void render(Graphics g, float offsetX, float offsetY) {
-        g.drawImage(frames.get(frameNum).image, (int) offsetX, (int) offsetY, null);
+        Frame frame = frames.get(frameNum);
+        if (frame.region != null) {
+            frame.region.render(g, offsetX, offsetY);
+        } else {
+            g.drawImage(frame.image, (int) offsetX, (int) offsetY, null);
+        }
+    }
+
+    @Override
+    public Image describe(float offsetX, float offsetY, int[] out) {
+        if (frames.isEmpty()) {
+            return null;
+        }
+        Frame frame = frames.get(frameNum);
+        if (frame.region != null) {
+            return frame.region.describe(offsetX, offsetY, out);
+        }
+        return Decal.describe(frame.image, offsetX, offsetY, frame.image.getWidth(), frame.image.getHeight(), out);
     }
 
     /**
@@ -177,11 +267,13 @@ public class AnimatedGraphic implements RenderItem {
 
     /**
      * Immutable wrapper for a single frame containing an image to render and
-     * the duration to render it for, in frames
+     * the duration to render it for, in frames. Frames packed into a
+     * TextureAtlas render from their region instead and have no image.
      */
     protected static class Frame {
 
         protected BufferedImage image;
+        protected AtlasRegion region;
         int duration;
 
         /**
@@ -194,6 +286,20 @@ public class AnimatedGraphic implements RenderItem {
             this.duration = duration;
             this.image = image;
         }
+
+        /**
+         * @return The width of the frame
+         */
+        protected int getWidth() {
+            return region != null ? region.getWidth() : image.getWidth();
+        }
+
+        /**
+         * @return The height of the frame
+         */
+        protected int getHeight() {
+            return region != null ? region.getHeight() : image.getHeight();
+        }
     }
 
     /**
@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis2d;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import org.aegis.ui.BoundedRenderItem;
+import org.aegis.ui.ImageRenderItem;
+
+/**
+ * A single image packed into a TextureAtlas, rendered straight from its source
+ * rectangle within one of the atlas' pages. Regions stay valid when the atlas
+ * is repacked, they simply point at their new location.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class AtlasRegion implements BoundedRenderItem, ImageRenderItem {
+
+    // THE ATLAS THIS BELONGS TO
+    private final TextureAtlas atlas;
+
+    // SOURCE RECTANGLE WITHIN THE PAGE
+    private BufferedImage page;
+    private int x;
+    private int y;
+    private final int width;
+    private final int height;
+
+    // WHETHER OR NOT THE REGION HAS BEEN REMOVED FROM THE ATLAS
+    private boolean removed;
+
+    /**
+     * Constructor
+     *
+     * @param atlas the atlas the region belongs to
+     * @param width the width of the image
+     * @param height the height of the image
+     */
+    AtlasRegion(TextureAtlas atlas, int width, int height) {
+        this.atlas = atlas;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Moves the region to a new location
+     *
+     * @param page the page image the region is on
+     * @param x the x coordinate within the page
+     * @param y the y coordinate within the page
+     */
+    void place(BufferedImage page, int x, int y) {
+        this.page = page;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Marks the region as removed from its atlas
+     */
+    void markRemoved() {
+        removed = true;
+    }
+
+    /**
+     * @return The atlas the region belongs to
+     */
+    public TextureAtlas getAtlas() {
+        return atlas;
+    }
+
+    /**
+     * @return The page image the region is currently on
+     */
+    public BufferedImage getPage() {
+        return page;
+    }
+
+    /**
+     * @return The x coordinate of the region within its page
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return The y coordinate of the region within its page
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * @return The width of the image
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The height of the image
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return True if the region has been removed from its atlas, in which
+     * case its pixels may be overwritten once the atlas is repacked
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the region as a BufferedImage sharing the page's pixels. This is
+     * only meant for compatibility with code which requires an image, since
+     * rendering the view won't benefit from the atlas.
+     *
+     * @return a view of the region within its current page
+     */
+    public BufferedImage getSubimage() {
+        return page.getSubimage(x, y, width, height);
+    }
+
+    @Override
+    public Rectangle2D.Float getBounds(Rectangle2D.Float out) {
+        out.setRect(0, 0, width, height);
+        return out;
+    }
+
+    @Override
+    public void render(Graphics g, float offsetX, float offsetY) {
+        int dx = (int) offsetX;
+        int dy = (int) offsetY;
+        g.drawImage(page, dx, dy, dx + width, dy + height, x, y, x + width, y + height, null);
+    }
+
+    /**
+     * Renders the region scaled to a given size
+     *
+     * @param g the Graphics to render with
+     * @param offsetX the X offset to render at
+     * @param offsetY the Y offset to render at
+     * @param width the width to scale to
+     * @param height the height to scale to
+     */
+    public void render(Graphics g, float offsetX, float offsetY, float width, float height) {
+        int dx = (int) offsetX;
+        int dy = (int) offsetY;
+        g.drawImage(page, dx, dy, dx + (int) width, dy + (int) height, x, y, x + this.width, y + this.height, null);
+    }
+
+    @Override
+    public Image describe(float offsetX, float offsetY, int[] out) {
+        return describe(offsetX, offsetY, width, height, out);
+    }
+
+    /**
+     * Describes what rendering the region stretched to a given size would
+     * currently draw
+     *
+     * @param offsetX the X offset it would be rendered at
+     * @param offsetY the Y offset it would be rendered at
+     * @param width the width it would be drawn at
+     * @param height the height it would be drawn at
+     * @param out an array of at least 8 ints to store the destination and
+     * source corners in
+     * @return the page to draw from
+     */
+    Image describe(float offsetX, float offsetY, float width, float height, int[] out) {
+        int dx = (int) offsetX;
+        int dy = (int) offsetY;
+        out[0] = dx;
+        out[1] = dy;
+        out[2] = dx + (int) width;
+        out[3] = dy + (int) height;
+        out[4] = x;
+        out[5] = y;
+        out[6] = x + this.width;
+        out[7] = y + this.height;
+        return page;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + width + 'x' + height + " @ " + x + ',' + y + ']';
+    }
+}
@@ -23,12 +23,15 @@
  */
 package org.aegis2d;
 
-import org.aegis.ui.RenderItem;
+import org.aegis.data.ImageIngestor;
+import org.aegis.ui.BoundedRenderItem;
+import org.aegis.ui.ImageRenderItem;
 import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
 
 /**
  * Immutable wrapper class for a BufferedImage allowing for RenderItem
@@ -38,11 +41,14 @@ import javax.imageio.ImageIO;
  *
  * @author Rogue <Alice Q.>
  */
-public class Decal implements RenderItem {
+public class Decal implements BoundedRenderItem, ImageRenderItem {
 
     // THE IMAGE TO WRAP AROUND
     private final BufferedImage image;
 
+    // THE REGION OF A TEXTURE ATLAS TO RENDER FROM INSTEAD, IF ANY
+    private final AtlasRegion region;
+
     /**
      * Basic constructor which creates an Decal wrapped around a BufferedImage
      *
@@ -50,26 +56,70 @@ public class Decal implements RenderItem {
      */
     public Decal(BufferedImage image) {
         this.image = image;
+        this.region = null;
     }
 
     /**
-     * Constructor which creates a Decal with the image data loaded from a file
+     * Constructor which creates a Decal rendering straight from a region of a
+     * TextureAtlas
+     *
+     * @param region the atlas region to render
+     */
+    public Decal(AtlasRegion region) {
+        this.image = null;
+        this.region = region;
+    }
+
+    /**
+     * Constructor which wraps the same image or atlas region as another Decal
+     *
+     * @param decal the Decal to share the image of
+     */
+    protected Decal(Decal decal) {
+        this.image = decal.image;
+        this.region = decal.region;
+    }
+
+    /**
+     * Constructor which creates a Decal with the image data loaded from a file,
+     * converted into the screen's format by the shared ImageIngestor
      *
      * @param file a file containing data about the image
      * @throws IOException when there is a problem reading the file, or the file
      * contains invalid data
      */
     public Decal(File file) throws IOException {
-        this.image = ImageIO.read(file);
+        this.image = ImageIngestor.SHARED.read(file);
+        this.region = null;
     }
 
     /**
-     * Returns the BufferedImage this is wrapped around
+     * Returns the BufferedImage this is wrapped around. For a Decal rendering
+     * from a TextureAtlas, this is a view of its region within the atlas.
      *
      * @return the BufferedImage this is wrapped around
      */
     public BufferedImage getImage() {
-        return image;
+        return region == null ? image : region.getSubimage();
+    }
+
+    /**
+     * Returns the image this actually draws from, which for a Decal rendering
+     * from a TextureAtlas is the whole atlas page. This is the image to build
+     * sort keys with so that decals sharing a page are drawn together.
+     *
+     * @return the image drawn from
+     */
+    public BufferedImage getSourceImage() {
+        return region == null ? image : region.getPage();
+    }
+
+    /**
+     * @return The TextureAtlas region this renders from, or null if it wraps
+     * its own image
+     */
+    public AtlasRegion getRegion() {
+        return region;
     }
 
     /**
@@ -78,7 +128,7 @@ public class Decal implements RenderItem {
      * @return the width of the decal
      */
     public int getWidth() {
-        return image.getWidth();
+        return region == null ? image.getWidth() : region.getWidth();
     }
 
     /**
@@ -87,7 +137,7 @@ public class Decal implements RenderItem {
      * @return the height of the decal
      */
     public int getHeight() {
-        return image.getHeight();
+        return region == null ? image.getHeight() : region.getHeight();
     }
 
     /**
@@ -98,12 +148,56 @@ public class Decal implements RenderItem {
      * @return a new Decal item wrapping the same image
      */
     public Decal getCopyOf() {
-        Decal decal = new Decal(image);
+        Decal decal = new Decal(this);
         return decal;
     }
 
+    @Override
+    public Rectangle2D.Float getBounds(Rectangle2D.Float out) {
+        out.setRect(0, 0, getWidth(), getHeight());
+        return out;
+    }
+
     @Override
     public void render(Graphics g, float offsetX, float offsetY) {
+        if (region != null) {
+            region.render(g, offsetX, offsetY);
+            return;
+        }
         g.drawImage(image, (int) offsetX, (int) offsetY, null);
     }
+
+    @Override
+    public Image describe(float offsetX, float offsetY, int[] out) {
+        if (region != null) {
+            return region.describe(offsetX, offsetY, out);
+        }
+        return describe(image, offsetX, offsetY, image.getWidth(), image.getHeight(), out);
+    }
+
+    /**
+     * Describes drawing the whole of an image stretched to a given size
+     *
+     * @param image the image to draw
+     * @param offsetX the X offset to draw it at
+     * @param offsetY the Y offset to draw it at
+     * @param width the width to draw it at
+     * @param height the height to draw it at
+     * @param out an array of at least 8 ints to store the destination and
+     * source corners in
+     * @return the same image
+     */
+    static Image describe(BufferedImage image, float offsetX, float offsetY, int width, int height, int[] out) {
+        int dx = (int) offsetX;
+        int dy = (int) offsetY;
+        out[0] = dx;
+        out[1] = dy;
+        out[2] = dx + width;
+        out[3] = dy + height;
+        out[4] = 0;
+        out[5] = 0;
+        out[6] = image.getWidth();
+        out[7] = image.getHeight();
+        return image;
+    }
 }
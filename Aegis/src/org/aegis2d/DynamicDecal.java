@@ -24,16 +24,26 @@
 package org.aegis2d;
 
 import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import org.aegis.data.ScaledImageCache;
+import org.aegis.ui.DirtyRegionTracker;
 
 /**
  * Simple class which functions as a Decal with additional functionality in the
- * form of scalability and local coordinates
+ * form of scalability and local coordinates. Scaled images are drawn from a
+ * ScaledImageCache, so an image is only rescaled when its size changes. While
+ * the size keeps changing, such as during a zoom, the image is scaled as it's
+ * drawn instead, and only cached once the size has settled.
  *
  * @author Rogue <Alice Q.>
  */
 public class DynamicDecal extends Decal {
 
+    // NUMBER OF DRAWS A SIZE HAS TO LAST BEFORE IT'S WORTH CACHING
+    private static final int SETTLE_DRAWS = 2;
+
     // X AND Y COORDINATES
     private float worldX;
     private float worldY;
@@ -42,13 +52,25 @@ public class DynamicDecal extends Decal {
     private float width;
     private float height;
 
+    // CACHE OF SCALED IMAGES AND THE QUALITY TO SCALE WITH
+    private ScaledImageCache cache = ScaledImageCache.SHARED;
+    private ScaledImageCache.Quality quality = ScaledImageCache.Quality.FAST;
+
+    // TRACKER CHANGES ARE REPORTED TO FOR DIRTY-REGION RENDERING
+    private DirtyRegionTracker tracker = DirtyRegionTracker.SHARED;
+
+    // THE LAST SIZE DRAWN AND HOW MANY DRAWS IN A ROW HAVE USED IT
+    private int drawnWidth;
+    private int drawnHeight;
+    private int settled;
+
     /**
      * Constructor for a DynamicDecal from a pre-loaded Decal located at 0,0
      *
      * @param decal the Decal to wrap this class around
      */
     public DynamicDecal(Decal decal) {
-        this(decal.getImage(), 0, 0);
+        this(decal, 0, 0);
     }
 
     /**
@@ -60,7 +82,7 @@ public class DynamicDecal extends Decal {
      *
      */
     public DynamicDecal(Decal decal, float initX, float initY) {
-        this(decal.getImage(), initX, initY);
+        this(decal, initX, initY, decal.getWidth(), decal.getHeight());
     }
 
     /**
@@ -73,7 +95,22 @@ public class DynamicDecal extends Decal {
      * @param initWidth the initial y scaling
      */
     public DynamicDecal(Decal decal, float initX, float initY, float initWidth, float initHeight) {
-        this(decal.getImage(), initX, initY, initWidth, initHeight);
+        super(decal);
+        this.worldX = initX;
+        this.worldY = initY;
+        this.width = initWidth;
+        this.height = initHeight;
+    }
+
+    /**
+     * Constructor for a DynamicDecal rendering from a region of a TextureAtlas
+     *
+     * @param region the atlas region to render
+     * @param initX the initial x position
+     * @param initY the initial y position
+     */
+    public DynamicDecal(AtlasRegion region, float initX, float initY) {
+        this(new Decal(region), initX, initY);
     }
 
     /**
@@ -94,7 +131,7 @@ public class DynamicDecal extends Decal {
      * @param initY the initial y position
      */
     public DynamicDecal(BufferedImage image, float initX, float initY) {
-        this(image, initX, initY, image.getWidth(), image.getHeight());
+        this(image, initX, initY, image.getHeight(), image.getWidth());
     }
 
     /**
@@ -139,7 +176,10 @@ public class DynamicDecal extends Decal {
      * @return the new x position
      */
     public float moveX(float amount) {
-        return worldX += amount;
+        damage();
+        worldX += amount;
+        damage();
+        return worldX;
     }
 
     /**
@@ -149,7 +189,10 @@ public class DynamicDecal extends Decal {
      * @return the new y position
      */
     public float moveY(float amount) {
-        return worldY += amount;
+        damage();
+        worldY += amount;
+        damage();
+        return worldY;
     }
 
     /**
@@ -159,8 +202,10 @@ public class DynamicDecal extends Decal {
      * @param dY the amount to move down
      */
     public void move(float dX, float dY) {
+        damage();
         worldX += dX;
         worldY += dY;
+        damage();
     }
 
     /**
@@ -170,8 +215,10 @@ public class DynamicDecal extends Decal {
      * @param worldY the y coordinate to move to
      */
     public void moveTo(float worldX, float worldY) {
+        damage();
         this.worldX = worldX;
         this.worldY = worldY;
+        damage();
     }
 
     /**
@@ -181,8 +228,10 @@ public class DynamicDecal extends Decal {
      * @param height
      */
     public void resize(float width, float height) {
+        damage();
         this.width = width;
         this.height = height;
+        damage();
     }
 
     /**
@@ -192,21 +241,170 @@ public class DynamicDecal extends Decal {
      * @param scaleY the percent to rescale to in the y direction
      */
     public void rescale(float scaleX, float scaleY) {
+        damage();
         width *= scaleX;
         height *= scaleY;
+        damage();
+    }
+
+    /**
+     * Reports the area currently covered as needing to be redrawn, if
+     * dirty-region rendering is on
+     */
+    private void damage() {
+        DirtyRegionTracker t = tracker;
+        if (t.isEnabled()) {
+            t.damage(worldX, worldY, width, height);
+        }
+    }
+
+    /**
+     * Sets the tracker moves and resizes are reported to, which should be the
+     * one used by the graphics the decal is drawn through
+     *
+     * @param tracker the tracker to report to
+     */
+    public void setDamageTracker(DirtyRegionTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("A damage tracker is required");
+        }
+        this.tracker = tracker;
+    }
+
+    /**
+     * @return The tracker moves and resizes are reported to
+     */
+    public DirtyRegionTracker getDamageTracker() {
+        return tracker;
+    }
+
+    /**
+     * Sets the cache scaled images are drawn from
+     *
+     * @param cache the cache to use, or null to rescale on every draw
+     */
+    public void setScaleCache(ScaledImageCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return The cache scaled images are drawn from, or null if there is none
+     */
+    public ScaledImageCache getScaleCache() {
+        return cache;
+    }
+
+    /**
+     * Sets how much effort goes into scaling the image. This is only used
+     * when drawing from a cache.
+     *
+     * @param quality the scaling quality
+     */
+    public void setScaleQuality(ScaledImageCache.Quality quality) {
+        this.quality = quality;
+    }
+
+    /**
+     * @return How much effort goes into scaling the image
+     */
+    public ScaledImageCache.Quality getScaleQuality() {
+        return quality;
     }
 
     @Override
     public DynamicDecal getCopyOf() {
-        DynamicDecal decal = new DynamicDecal(getImage());
+        DynamicDecal decal = new DynamicDecal((Decal) this);
         return decal;
     }
 
+    @Override
+    public Rectangle2D.Float getBounds(Rectangle2D.Float out) {
+        out.setRect(worldX, worldY, width, height);
+        return out;
+    }
+
     @Override
     public void render(Graphics g, float offsetX, float offsetY) {
+        int w = (int) width;
+        int h = (int) height;
+
+        // NO SCALING NEEDED
+        if (w == getWidth() && h == getHeight()) {
+            super.render(g, worldX + offsetX, worldY + offsetY);
+            return;
+        }
+
+        BufferedImage scaled = getScaled(w, h);
+        if (scaled != null) {
+            g.drawImage(scaled, (int) (worldX + offsetX), (int) (worldY + offsetY), null);
+            return;
+        }
+
+        // FALL BACK TO SCALING WHILE DRAWING
+        AtlasRegion region = getRegion();
+        if (region != null) {
+            region.render(g, worldX + offsetX, worldY + offsetY, width, height);
+            return;
+        }
         g.drawImage(super.getImage(), (int) (worldX + offsetX), (int) (worldY + offsetY), (int) width, (int) height, null);
     }
 
+    @Override
+    public Image describe(float offsetX, float offsetY, int[] out) {
+        int w = (int) width;
+        int h = (int) height;
+
+        // NO SCALING NEEDED
+        if (w == getWidth() && h == getHeight()) {
+            return super.describe(worldX + offsetX, worldY + offsetY, out);
+        }
+        if (w <= 0 || h <= 0) {
+            return null;
+        }
+
+        BufferedImage scaled = getScaled(w, h);
+        if (scaled != null) {
+            return Decal.describe(scaled, worldX + offsetX, worldY + offsetY, w, h, out);
+        }
+        AtlasRegion region = getRegion();
+        if (region != null) {
+            return region.describe(worldX + offsetX, worldY + offsetY, width, height, out);
+        }
+        return Decal.describe(super.getImage(), worldX + offsetX, worldY + offsetY, w, h, out);
+    }
+
+    /**
+     * Looks up the image scaled to a given size in the cache, scaling it into
+     * the cache on a miss only once that size has settled
+     *
+     * @param w the width to scale to
+     * @param h the height to scale to
+     * @return the scaled image, or null if it should be scaled while drawing
+     */
+    private BufferedImage getScaled(int w, int h) {
+        if (w == drawnWidth && h == drawnHeight) {
+            if (settled < SETTLE_DRAWS) {
+                settled++;
+            }
+        } else {
+            drawnWidth = w;
+            drawnHeight = h;
+            settled = 0;
+        }
+
+        AtlasRegion region = getRegion();
+        ScaledImageCache c = cache;
+        if (c != null && w > 0 && h > 0) {
+            Object source = region != null ? region : getImage();
+            BufferedImage scaled = c.lookup(source, w, h, quality);
+            if (scaled == null && settled >= SETTLE_DRAWS) {
+                scaled = c.scale(source, region != null ? region.getSubimage() : getImage(), w, h, quality);
+            }
+            return scaled;
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return super.toString() + '@' + worldX + ',' + worldY;
@@ -24,18 +24,29 @@
 package org.aegis2d;
 
 import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import org.aegis.ui.RenderItem;
+import org.aegis.game.RuntimeSystem;
+import org.aegis.ui.BoundedRenderItem;
+import org.aegis.ui.DirtyRegionTracker;
+import org.aegis.ui.ImageRenderItem;
 
 /**
  * Class which functions as the main graphical component for graphical sprites
- * with multiple animations. However, this does not allow rescaling.
+ * with multiple animations. However, this does not allow rescaling. The
+ * current animation only advances when the sprite is updated, which its scene
+ * arranges by adding it with GameScene.addAnimation(). It's then advanced once
+ * per simulation step whether or not it's drawn, so with a fixed timestep its
+ * speed follows the step rate rather than the framerate. Moving the sprite or
+ * changing what it shows reports the affected area for dirty-region
+ * rendering.
  *
  * @author Rogue <Alice Q>
  */
-public class Sprite2D implements RenderItem {
+public class Sprite2D implements BoundedRenderItem, ImageRenderItem, RuntimeSystem {
 
     // WORLD X AND Y
     private float worldX;
@@ -50,6 +61,9 @@ public class Sprite2D implements RenderItem {
     // USED TO PAUSE THE ANIMATION
     private boolean running;
 
+    // TRACKER CHANGES ARE REPORTED TO FOR DIRTY-REGION RENDERING
+    private DirtyRegionTracker tracker = DirtyRegionTracker.SHARED;
+
     /**
      * Constructor for an empty Sprite2D initialized at the origin
      */
@@ -76,7 +90,9 @@ public class Sprite2D implements RenderItem {
      * @param worldX the new x coordinate
      */
     public void setWorldX(float worldX) {
+        damage();
         this.worldX = worldX;
+        damage();
     }
 
     /**
@@ -85,7 +101,9 @@ public class Sprite2D implements RenderItem {
      * @param worldY the new y coordinate
      */
     public void setWorldY(float worldY) {
+        damage();
         this.worldY = worldY;
+        damage();
     }
 
     /**
@@ -95,8 +113,10 @@ public class Sprite2D implements RenderItem {
      * @param worldY the new y coordinate
      */
     public void setWorldCoordinates(float worldX, float worldY) {
+        damage();
         this.worldX = worldX;
         this.worldY = worldY;
+        damage();
     }
 
     /**
@@ -162,8 +182,10 @@ public class Sprite2D implements RenderItem {
         if (index < 0 || index >= animations.size()) {
             throw new IndexOutOfBoundsException();
         }
+        damage();
         currentState = animations.get(index);
         currentState.reset();
+        damage();
     }
 
     /**
@@ -232,15 +254,98 @@ public class Sprite2D implements RenderItem {
      * Resets the current animation to its initial frame
      */
     public void reset() {
+        damage();
         currentState.reset();
+        damage();
+    }
+
+    /**
+     * Reports the area currently covered as needing to be redrawn, if
+     * dirty-region rendering is on
+     */
+    private void damage() {
+        DirtyRegionTracker t = tracker;
+        AnimatedGraphic state = currentState;
+        if (t.isEnabled() && state != null) {
+            t.damage(worldX, worldY, state.getWidth(), state.getHeight());
+        }
+    }
+
+    /**
+     * Sets the tracker changes to the sprite are reported to, which should be
+     * the one used by the graphics the sprite is drawn through
+     *
+     * @param tracker the tracker to report to
+     */
+    public void setDamageTracker(DirtyRegionTracker tracker) {
+        if (tracker == null) {
+            throw new IllegalArgumentException("A damage tracker is required");
+        }
+        this.tracker = tracker;
+    }
+
+    /**
+     * @return The tracker changes to the sprite are reported to
+     */
+    public DirtyRegionTracker getDamageTracker() {
+        return tracker;
+    }
+
+    /**
+     * Returns the area covered by the current animation's current frame at the
+     * sprite's world coordinates
+     *
+     * @param out the rectangle to store the bounds in
+     * @return the same rectangle, holding the sprite's bounds
+     */
+    @Override
+    public Rectangle2D.Float getBounds(Rectangle2D.Float out) {
+        if (currentState == null) {
+            out.setRect(worldX, worldY, 0, 0);
+            return out;
+        }
+        currentState.getBounds(out);
+        out.x += worldX;
+        out.y += worldY;
+        return out;
+    }
+
+    /**
+     * Advances the current animation, unless it's paused. This is called
+     * every step by the game's AnimationClock once the sprite's scene has
+     * added it, whether or not the sprite gets drawn.
+     */
+    @Override
+    public void update() {
+        AnimatedGraphic state = currentState;
+        if (!running || state == null) {
+            return;
+        }
+        DirtyRegionTracker t = tracker;
+        if (t.isEnabled()) {
+            // A NEW FRAME DAMAGES BOTH THE OLD AND THE NEW FRAME'S AREA
+            int frame = state.getCurrentFrame();
+            int width = state.getWidth();
+            int height = state.getHeight();
+            state.update();
+            if (state.getCurrentFrame() != frame) {
+                t.damage(worldX, worldY, width, height);
+                damage();
+            }
+        } else {
+            state.update();
+        }
     }
 
     @Override
     public void render(Graphics g, float offsetX, float offsetY) {
         currentState.render(g, worldX + offsetX, worldY + offsetY);
-        if (running) {
-            currentState.update();
-        }
+    }
+
+    @Override
+    public Image describe(float offsetX, float offsetY, int[] out) {
+        AnimatedGraphic state = currentState;
+        return state == null ? null : state.describe(worldX + offsetX, worldY + offsetY, out);
     }
 
     @Override
@@ -0,0 +1,370 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis2d;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.aegis.data.ImageIngestor;
+
+/**
+ * Packs many small images into a few large pages, so that they can all be
+ * drawn from the same accelerated images instead of each keeping an image of
+ * its own. Images are placed using a skyline packer, which keeps track of the
+ * top edge of everything placed so far and puts each new image as low as
+ * possible. Removed images leave holes behind until the atlas is repacked.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class TextureAtlas {
+
+    // DEFAULT PAGE DIMENSIONS
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+
+    // DEFAULT SPACE LEFT BETWEEN IMAGES TO AVOID BLEEDING WHEN SCALING
+    public static final int DEFAULT_PADDING = 1;
+
+    // PAGE DIMENSIONS
+    private final int pageWidth;
+    private final int pageHeight;
+    private final int padding;
+
+    // ALL OF THE PAGES AND REGIONS
+    private final List<Page> pages;
+    private final List<AtlasRegion> regions;
+
+    // NUMBER OF PIXELS USED BY REGIONS WHICH HAVEN'T BEEN REMOVED
+    private long usedPixels;
+
+    // NUMBER OF TIMES THE ATLAS HAS BEEN REPACKED
+    private int repacks;
+
+    /**
+     * Constructor for an atlas with the default page size
+     */
+    public TextureAtlas() {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Constructor for an atlas with the default padding
+     *
+     * @param pageWidth the width of each page
+     * @param pageHeight the height of each page
+     */
+    public TextureAtlas(int pageWidth, int pageHeight) {
+        this(pageWidth, pageHeight, DEFAULT_PADDING);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pageWidth the width of each page
+     * @param pageHeight the height of each page
+     * @param padding the number of pixels to leave between images
+     */
+    public TextureAtlas(int pageWidth, int pageHeight, int padding) {
+        if (pageWidth <= 0 || pageHeight <= 0 || padding < 0) {
+            throw new IllegalArgumentException("Invalid atlas dimensions");
+        }
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.padding = padding;
+        this.pages = new ArrayList();
+        this.regions = new ArrayList();
+    }
+
+    /**
+     * Copies an image into the atlas
+     *
+     * @param image the image to add
+     * @return the region the image was placed in
+     * @throws IllegalArgumentException if the image doesn't fit on a page
+     */
+    public synchronized AtlasRegion add(BufferedImage image) {
+        if (image.getWidth() > pageWidth || image.getHeight() > pageHeight) {
+            throw new IllegalArgumentException("Image is larger than an atlas page");
+        }
+        AtlasRegion region = new AtlasRegion(this, image.getWidth(), image.getHeight());
+        place(region, image, 0, 0, pages);
+        regions.add(region);
+        usedPixels += (long) region.getWidth() * region.getHeight();
+        return region;
+    }
+
+    /**
+     * Removes a region from the atlas. Its space is only reclaimed once the
+     * atlas is repacked, and it must no longer be rendered after that.
+     *
+     * @param region the region to remove
+     * @return true if the region was in the atlas
+     */
+    public synchronized boolean remove(AtlasRegion region) {
+        if (!regions.remove(region)) {
+            return false;
+        }
+        region.markRemoved();
+        usedPixels -= (long) region.getWidth() * region.getHeight();
+        return true;
+    }
+
+    /**
+     * Packs every remaining region into new pages from scratch, tallest first,
+     * reclaiming the space of removed regions. Regions are updated to point
+     * at their new locations, so this should be done between frames.
+     */
+    public synchronized void repack() {
+        List<AtlasRegion> sorted = new ArrayList(regions);
+        Collections.sort(sorted, new Comparator<AtlasRegion>() {
+
+            @Override
+            public int compare(AtlasRegion a, AtlasRegion b) {
+                if (a.getHeight() != b.getHeight()) {
+                    return b.getHeight() - a.getHeight();
+                }
+                return b.getWidth() - a.getWidth();
+            }
+        });
+
+        List<Page> packed = new ArrayList();
+        for (AtlasRegion region : sorted) {
+            place(region, region.getPage(), region.getX(), region.getY(), packed);
+        }
+        for (Page page : pages) {
+            page.image.flush();
+        }
+        pages.clear();
+        pages.addAll(packed);
+        repacks++;
+    }
+
+    /**
+     * Finds a spot for a region in a list of pages, adding a page if none has
+     * room, and copies the region's pixels there
+     *
+     * @param region the region to place
+     * @param source the image holding the pixels
+     * @param sx the x coordinate of the pixels within the source
+     * @param sy the y coordinate of the pixels within the source
+     * @param into the pages to place the region in
+     */
+    private void place(AtlasRegion region, BufferedImage source, int sx, int sy, List<Page> into) {
+        int w = Math.min(region.getWidth() + padding, pageWidth);
+        int h = Math.min(region.getHeight() + padding, pageHeight);
+
+        Page target = null;
+        int index = -1;
+        for (Page page : into) {
+            index = page.find(w, h);
+            if (index >= 0) {
+                target = page;
+                break;
+            }
+        }
+        if (target == null) {
+            target = new Page(pageWidth, pageHeight);
+            into.add(target);
+            index = target.find(w, h);
+        }
+
+        int x = target.x.get(index);
+        int y = target.fit(index, w);
+        target.insert(index, w, y + h);
+
+        Graphics2D g = target.image.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(source, x, y, x + region.getWidth(), y + region.getHeight(),
+                    sx, sy, sx + region.getWidth(), sy + region.getHeight(), null);
+        } finally {
+            g.dispose();
+        }
+        region.place(target.image, x, y);
+    }
+
+    /**
+     * @return The number of pages in use
+     */
+    public synchronized int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Returns one of the atlas' page images
+     *
+     * @param index the index of the page
+     * @return the page's image
+     */
+    public synchronized BufferedImage getPage(int index) {
+        return pages.get(index).image;
+    }
+
+    /**
+     * @return The number of images in the atlas
+     */
+    public synchronized int size() {
+        return regions.size();
+    }
+
+    /**
+     * @return The fraction of the pages' area covered by images which haven't
+     * been removed, from 0.0 to 1.0
+     */
+    public synchronized float getFillRatio() {
+        if (pages.isEmpty()) {
+            return 0;
+        }
+        return (float) ((double) usedPixels / ((long) pages.size() * pageWidth * pageHeight));
+    }
+
+    /**
+     * @return The number of times the atlas has been repacked
+     */
+    public int getRepacks() {
+        return repacks;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("[TextureAtlas %d images\t%d pages of %dx%d\t%.1f%% full]", regions.size(), pages.size(), pageWidth, pageHeight, getFillRatio() * 100);
+    }
+
+    /**
+     * A single page and its skyline, made up of horizontal segments sorted
+     * from left to right which together span the whole width of the page
+     */
+    private static class Page {
+
+        private final BufferedImage image;
+        private final int width;
+        private final int height;
+
+        // SKYLINE SEGMENTS
+        private final List<Integer> x;
+        private final List<Integer> y;
+        private final List<Integer> w;
+
+        private Page(int width, int height) {
+            this.image = ImageIngestor.createCompatible(width, height, Transparency.TRANSLUCENT);
+            this.width = width;
+            this.height = height;
+            this.x = new ArrayList();
+            this.y = new ArrayList();
+            this.w = new ArrayList();
+            x.add(0);
+            y.add(0);
+            w.add(width);
+        }
+
+        /**
+         * Returns the height a rectangle would rest at if its left edge were
+         * placed at the start of a segment
+         *
+         * @param index the segment to start at
+         * @param width the width of the rectangle
+         * @return the height it would rest at, or -1 if it runs off the page
+         */
+        private int fit(int index, int width) {
+            if (x.get(index) + width > this.width) {
+                return -1;
+            }
+            int top = 0;
+            int remaining = width;
+            for (int i = index; remaining > 0; i++) {
+                top = Math.max(top, y.get(i));
+                remaining -= w.get(i);
+            }
+            return top;
+        }
+
+        /**
+         * Finds the segment where a rectangle would end up lowest
+         *
+         * @param width the width of the rectangle
+         * @param height the height of the rectangle
+         * @return the index of the best segment, or -1 if it doesn't fit
+         */
+        private int find(int width, int height) {
+            int best = -1;
+            int bestTop = Integer.MAX_VALUE;
+            int bestWidth = Integer.MAX_VALUE;
+            for (int i = 0; i < x.size(); i++) {
+                int top = fit(i, width);
+                if (top < 0 || top + height > this.height) {
+                    continue;
+                }
+                if (top + height < bestTop || (top + height == bestTop && w.get(i) < bestWidth)) {
+                    best = i;
+                    bestTop = top + height;
+                    bestWidth = w.get(i);
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Raises the skyline where a rectangle was placed
+         *
+         * @param index the segment the rectangle starts at
+         * @param width the width of the rectangle
+         * @param top the new height of the skyline under the rectangle
+         */
+        private void insert(int index, int width, int top) {
+            int left = x.get(index);
+            int right = left + width;
+
+            // TRIM OR REMOVE EVERY SEGMENT UNDER THE RECTANGLE
+            while (index < x.size() && x.get(index) < right) {
+                int end = x.get(index) + w.get(index);
+                if (end <= right) {
+                    x.remove(index);
+                    y.remove(index);
+                    w.remove(index);
+                } else {
+                    x.set(index, right);
+                    w.set(index, end - right);
+                    break;
+                }
+            }
+            x.add(index, left);
+            y.add(index, top);
+            w.add(index, width);
+
+            // MERGE NEIGHBOURS AT THE SAME HEIGHT
+            for (int i = x.size() - 1; i > 0; i--) {
+                if (y.get(i).equals(y.get(i - 1))) {
+                    w.set(i - 1, w.get(i - 1) + w.get(i));
+                    x.remove(i);
+                    y.remove(i);
+                    w.remove(i);
+                }
+            }
+        }
+    }
+}
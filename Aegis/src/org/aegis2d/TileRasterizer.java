@@ -0,0 +1,698 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014 Rogue <Alice Q.>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.aegis2d;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.aegis.ui.BoundedRenderItem;
+import org.aegis.ui.LayerStack;
+import org.aegis.ui.RenderItem;
+import org.aegis.ui.RenderList;
+
+/**
+ * Software renderer which splits a frame into square tiles and rasterizes the
+ * tiles in parallel, writing straight into the pixels of a
+ * TYPE_INT_ARGB_PRE image which is then drawn with a single drawImage.
+ * RenderLists and LayerStacks are flattened into their items, which are
+ * binned into every tile their bounds overlap.
+ * <p>
+ * Decals, AtlasRegions and unscaled DynamicDecals are copied or alpha blended
+ * by the rasterizer itself. Any other item is drawn through Java2D, so every
+ * tile containing one is left to Java2D as a whole once the other tiles are
+ * done. Those tiles share a single Graphics clipped to all of them, and each
+ * item in any of them is drawn through it once, on the calling thread and in
+ * submission order. Images which aren't stored as ints are converted once
+ * and the copy is reused, so changes to them afterwards aren't picked up.
+ * Reading an image's pixels this way stops Java2D from accelerating it.
+ *
+ * @author Rogue <Alice Q.>
+ */
+public class TileRasterizer {
+
+    // DEFAULT TILE EDGE LENGTH IN PIXELS
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    // HOW EACH SOURCE IMAGE IS DRAWN
+    // - PREMULTIPLIED PIXELS, BLENDED AS THEY ARE
+    // - STRAIGHT ALPHA PIXELS, PREMULTIPLIED WHILE BLENDING
+    // - PIXELS WITHOUT ALPHA, COPIED AS OPAQUE
+    private static final int BLEND = 0;
+    private static final int STRAIGHT = 1;
+    private static final int OPAQUE = 2;
+
+    // THE THREADS TILES ARE RASTERIZED ON
+    private final ForkJoinPool pool;
+
+    // TILE EDGE LENGTH
+    private final int tileSize;
+
+    // THE IMAGE BEING RENDERED INTO AND ITS PIXELS
+    private BufferedImage image;
+    private int[] pixels;
+    private int columns;
+    private int rows;
+
+    // FLATTENED ITEMS OF THE CURRENT FRAME
+    // - THE ITEM AND THE OFFSET IT'S RENDERED AT
+    // - ITS SCREEN AREA
+    // - ITS SOURCE AND WHERE IN IT TO COPY FROM, OR NULL IF IT'S DRAWN THROUGH JAVA2D
+    private RenderItem[] items;
+    private float[] offsets;
+    private int[] area;
+    private Source[] sources;
+    private int[] origins;
+    private int count;
+
+    // ITEMS BINNED PER TILE, AND WHETHER A TILE NEEDS JAVA2D
+    private int[][] bins;
+    private int[] binSizes;
+    private boolean[] fallback;
+
+    // WHETHER EACH ITEM IS IN A TILE WHICH NEEDS JAVA2D
+    private boolean[] fallbackItems;
+
+    // CONVERTED SOURCE PIXELS BY IMAGE
+    private final Map<BufferedImage, Source> cache;
+
+    // SCRATCH RECTANGLE FOR ITEM BOUNDS
+    private final Rectangle2D.Float bounds;
+
+    // STATISTICS FOR THE LAST FRAME
+    private volatile int fallbackTiles;
+    private volatile long lastRasterNanos;
+
+    /**
+     * Constructor for a rasterizer using one thread per processor and the
+     * default tile size
+     */
+    public TileRasterizer() {
+        this(new ForkJoinPool(), DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pool the pool to rasterize tiles on
+     * @param tileSize the width and height of each tile in pixels
+     */
+    public TileRasterizer(ForkJoinPool pool, int tileSize) {
+        if (pool == null) {
+            throw new IllegalArgumentException("A pool is required");
+        }
+        if (tileSize < 8) {
+            throw new IllegalArgumentException("Tiles must be at least 8 pixels wide");
+        }
+        this.pool = pool;
+        this.tileSize = tileSize;
+        this.items = new RenderItem[64];
+        this.offsets = new float[128];
+        this.area = new int[256];
+        this.sources = new Source[64];
+        this.origins = new int[128];
+        this.bins = new int[0][];
+        this.binSizes = new int[0];
+        this.fallback = new boolean[0];
+        this.fallbackItems = new boolean[64];
+        this.cache = new WeakHashMap();
+        this.bounds = new Rectangle2D.Float();
+    }
+
+    /**
+     * Renders a frame into the rasterizer's image and draws it
+     *
+     * @param g the Graphics to draw the finished frame with
+     * @param root the items to render
+     * @param offsetX the X offset to render at
+     * @param offsetY the Y offset to render at
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param background the color to clear the frame to
+     */
+    public void render(Graphics g, RenderItem root, float offsetX, float offsetY, int width, int height, Color background) {
+        render(g, null, root, offsetX, offsetY, width, height, background);
+    }
+
+    /**
+     * Renders a frame with a background item into the rasterizer's image and
+     * draws it
+     *
+     * @param g the Graphics to draw the finished frame with
+     * @param backdrop an item drawn at the origin before anything else, or
+     * null for none
+     * @param root the items to render
+     * @param offsetX the X offset to render at
+     * @param offsetY the Y offset to render at
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param background the color to clear the frame to
+     */
+    public void render(Graphics g, RenderItem backdrop, RenderItem root, float offsetX, float offsetY, int width, int height, Color background) {
+        g.drawImage(rasterize(backdrop, root, offsetX, offsetY, width, height, background), 0, 0, null);
+    }
+
+    /**
+     * Renders a frame into the rasterizer's image. The image is reused for
+     * every frame of the same size, so it must not be held onto past the next
+     * call.
+     *
+     * @param root the items to render
+     * @param offsetX the X offset to render at
+     * @param offsetY the Y offset to render at
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param background the color to clear the frame to
+     * @return the rendered frame
+     */
+    public BufferedImage rasterize(RenderItem root, float offsetX, float offsetY, int width, int height, Color background) {
+        return rasterize(null, root, offsetX, offsetY, width, height, background);
+    }
+
+    /**
+     * Renders a frame with a background item into the rasterizer's image.
+     * The image is reused for every frame of the same size, so it must not be
+     * held onto past the next call.
+     *
+     * @param backdrop an item drawn at the origin before anything else, or
+     * null for none
+     * @param root the items to render
+     * @param offsetX the X offset to render at
+     * @param offsetY the Y offset to render at
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param background the color to clear the frame to
+     * @return the rendered frame
+     */
+    public BufferedImage rasterize(RenderItem backdrop, RenderItem root, float offsetX, float offsetY, int width, int height, Color background) {
+        long start = System.nanoTime();
+        prepare(Math.max(1, width), Math.max(1, height));
+
+        count = 0;
+        if (backdrop != null) {
+            flatten(backdrop, 0, 0);
+        }
+        if (root != null) {
+            flatten(root, offsetX, offsetY);
+        }
+        bin();
+
+        final int clear = background == null ? 0 : premultiply(background.getRGB());
+        pool.invoke(new TileTask(0, bins.length, clear));
+
+        // TILES WITH ITEMS ONLY JAVA2D CAN DRAW ARE CLEARED, AND THEIR ITEMS
+        // ARE DRAWN ONCE EACH THROUGH A CLIP COVERING ALL OF THOSE TILES
+        int fallbacks = 0;
+        Path2D.Float clip = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        for (int t = 0; t < bins.length; t++) {
+            if (!fallback[t]) {
+                continue;
+            }
+            fillTile(t, clear);
+            clip.append(new Rectangle2D.Float((t % columns) * tileSize, (t / columns) * tileSize, tileSize, tileSize), false);
+            int[] bin = bins[t];
+            for (int b = 0; b < binSizes[t]; b++) {
+                fallbackItems[bin[b]] = true;
+            }
+            fallbacks++;
+        }
+        if (fallbacks > 0) {
+            Graphics2D g2 = image.createGraphics();
+            try {
+                g2.setClip(clip);
+                for (int i = 0; i < count; i++) {
+                    if (fallbackItems[i]) {
+                        items[i].render(g2, offsets[i * 2], offsets[i * 2 + 1]);
+                    }
+                }
+            } finally {
+                g2.dispose();
+            }
+            Arrays.fill(fallbackItems, 0, count, false);
+        }
+        Arrays.fill(items, 0, count, null);
+        Arrays.fill(sources, 0, count, null);
+
+        fallbackTiles = fallbacks;
+        lastRasterNanos = System.nanoTime() - start;
+        return image;
+    }
+
+    /**
+     * Makes sure the image and tile grid match the size of the frame
+     *
+     * @param width the width of the frame
+     * @param height the height of the frame
+     */
+    private void prepare(int width, int height) {
+        if (image != null && image.getWidth() == width && image.getHeight() == height) {
+            return;
+        }
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        columns = (width + tileSize - 1) / tileSize;
+        rows = (height + tileSize - 1) / tileSize;
+        int tiles = columns * rows;
+        bins = new int[tiles][16];
+        binSizes = new int[tiles];
+        fallback = new boolean[tiles];
+    }
+
+    /**
+     * Adds an item to the frame, breaking up lists and layer stacks into the
+     * items inside them
+     *
+     * @param item the item to add
+     * @param offsetX the X offset it's rendered at
+     * @param offsetY the Y offset it's rendered at
+     */
+    private void flatten(RenderItem item, float offsetX, float offsetY) {
+        if (item instanceof RenderList) {
+            RenderList list = (RenderList) item;
+            if (list.isSorted()) {
+                list.sort();
+            }
+            for (int i = 0; i < list.size(); i++) {
+                flatten(list.get(i), offsetX, offsetY);
+            }
+            return;
+        }
+        if (item instanceof LayerStack) {
+            LayerStack stack = (LayerStack) item;
+            for (int i = 0; i < stack.size(); i++) {
+                for (RenderItem layered : stack.getLayerContents(i)) {
+                    flatten(layered, offsetX, offsetY);
+                }
+            }
+            return;
+        }
+
+        if (count == items.length) {
+            items = Arrays.copyOf(items, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 4);
+            area = Arrays.copyOf(area, count * 8);
+            sources = Arrays.copyOf(sources, count * 2);
+            origins = Arrays.copyOf(origins, count * 4);
+            fallbackItems = Arrays.copyOf(fallbackItems, count * 2);
+        }
+        int i = count++;
+        items[i] = item;
+        offsets[i * 2] = offsetX;
+        offsets[i * 2 + 1] = offsetY;
+        sources[i] = null;
+
+        // WORK OUT WHAT TO COPY FROM WHERE, IF IT CAN BE DONE DIRECTLY
+        int a = i * 4;
+        if (item instanceof DynamicDecal) {
+            DynamicDecal decal = (DynamicDecal) item;
+            decal.getBounds(bounds);
+            if ((int) bounds.width != decal.getWidth() || (int) bounds.height != decal.getHeight()) {
+                measure(item, a, offsetX, offsetY);
+                return;
+            }
+            select(decal, (int) (bounds.x + offsetX), (int) (bounds.y + offsetY), i);
+        } else if (item instanceof Decal) {
+            select((Decal) item, (int) offsetX, (int) offsetY, i);
+        } else if (item instanceof AtlasRegion) {
+            AtlasRegion region = (AtlasRegion) item;
+            sources[i] = source(region.getPage());
+            setArea(i, (int) offsetX, (int) offsetY, region.getX(), region.getY(), region.getWidth(), region.getHeight());
+        } else {
+            measure(item, a, offsetX, offsetY);
+        }
+    }
+
+    /**
+     * Records what a Decal draws from and where
+     *
+     * @param decal the decal
+     * @param x the screen X position it's drawn at
+     * @param y the screen Y position it's drawn at
+     * @param i the index of the item
+     */
+    private void select(Decal decal, int x, int y, int i) {
+        AtlasRegion region = decal.getRegion();
+        if (region != null) {
+            sources[i] = source(region.getPage());
+            setArea(i, x, y, region.getX(), region.getY(), region.getWidth(), region.getHeight());
+        } else {
+            sources[i] = source(decal.getImage());
+            setArea(i, x, y, 0, 0, decal.getWidth(), decal.getHeight());
+        }
+    }
+
+    /**
+     * Records the screen area of an item drawn through Java2D, or the whole
+     * frame if it has no bounds
+     *
+     * @param item the item
+     * @param a the index of its area
+     * @param offsetX the X offset it's rendered at
+     * @param offsetY the Y offset it's rendered at
+     */
+    private void measure(RenderItem item, int a, float offsetX, float offsetY) {
+        int[] dst = area;
+        if (item instanceof BoundedRenderItem) {
+            ((BoundedRenderItem) item).getBounds(bounds);
+            int x = (int) Math.floor(bounds.x + offsetX);
+            int y = (int) Math.floor(bounds.y + offsetY);
+            dst[a] = x;
+            dst[a + 1] = y;
+            dst[a + 2] = (int) Math.ceil(bounds.x + offsetX + bounds.width) + 1;
+            dst[a + 3] = (int) Math.ceil(bounds.y + offsetY + bounds.height) + 1;
+        } else {
+            dst[a] = Integer.MIN_VALUE / 2;
+            dst[a + 1] = Integer.MIN_VALUE / 2;
+            dst[a + 2] = Integer.MAX_VALUE / 2;
+            dst[a + 3] = Integer.MAX_VALUE / 2;
+        }
+    }
+
+    /**
+     * Records the screen area of an item the rasterizer draws itself, along
+     * with where its pixels come from
+     *
+     * @param i the index of the item
+     * @param x the screen X position it's drawn at
+     * @param y the screen Y position it's drawn at
+     * @param srcX the X position of its pixels within the source image
+     * @param srcY the Y position of its pixels within the source image
+     * @param width the width of the area drawn
+     * @param height the height of the area drawn
+     */
+    private void setArea(int i, int x, int y, int srcX, int srcY, int width, int height) {
+        int a = i * 4;
+        area[a] = x;
+        area[a + 1] = y;
+        area[a + 2] = x + width;
+        area[a + 3] = y + height;
+        origins[i * 2] = srcX;
+        origins[i * 2 + 1] = srcY;
+    }
+
+    /**
+     * Sorts every item into the tiles it overlaps, keeping their order
+     */
+    private void bin() {
+        Arrays.fill(binSizes, 0);
+        Arrays.fill(fallback, false);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int i = 0; i < count; i++) {
+            int a = i * 4;
+            int x0 = Math.max(0, area[a]);
+            int y0 = Math.max(0, area[a + 1]);
+            int x1 = Math.min(width, area[a + 2]);
+            int y1 = Math.min(height, area[a + 3]);
+            if (x0 >= x1 || y0 >= y1) {
+                continue;
+            }
+            boolean direct = sources[i] != null;
+            for (int ty = y0 / tileSize; ty <= (y1 - 1) / tileSize; ty++) {
+                for (int tx = x0 / tileSize; tx <= (x1 - 1) / tileSize; tx++) {
+                    int t = ty * columns + tx;
+                    int[] bin = bins[t];
+                    if (binSizes[t] == bin.length) {
+                        bins[t] = bin = Arrays.copyOf(bin, bin.length * 2);
+                    }
+                    bin[binSizes[t]++] = i;
+                    if (!direct) {
+                        fallback[t] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the pixels of an image, converting it first if they aren't
+     * stored as ints
+     *
+     * @param image the image
+     * @return its pixels
+     */
+    private Source source(BufferedImage image) {
+        Source source = cache.get(image);
+        if (source != null) {
+            return source;
+        }
+
+        int type = image.getType();
+        int mode;
+        if (type == BufferedImage.TYPE_INT_ARGB_PRE) {
+            mode = BLEND;
+        } else if (type == BufferedImage.TYPE_INT_ARGB) {
+            mode = STRAIGHT;
+        } else if (type == BufferedImage.TYPE_INT_RGB) {
+            mode = OPAQUE;
+        } else {
+            BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = converted.createGraphics();
+            try {
+                g.drawImage(image, 0, 0, null);
+            } finally {
+                g.dispose();
+            }
+            source = new Source(converted, BLEND);
+            cache.put(image, source);
+            return source;
+        }
+        source = new Source(image, mode);
+        cache.put(image, source);
+        return source;
+    }
+
+    /**
+     * Clears a tile to the background color
+     *
+     * @param t the tile index
+     * @param clear the premultiplied background color
+     */
+    private void fillTile(int t, int clear) {
+        int width = image.getWidth();
+        int x0 = (t % columns) * tileSize;
+        int y0 = (t / columns) * tileSize;
+        int x1 = Math.min(width, x0 + tileSize);
+        int y1 = Math.min(image.getHeight(), y0 + tileSize);
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(pixels, y * width + x0, y * width + x1, clear);
+        }
+    }
+
+    /**
+     * Rasterizes a tile which only holds items the rasterizer draws itself
+     *
+     * @param t the tile index
+     * @param clear the premultiplied background color
+     */
+    private void rasterizeTile(int t, int clear) {
+        fillTile(t, clear);
+        int width = image.getWidth();
+        int tx0 = (t % columns) * tileSize;
+        int ty0 = (t / columns) * tileSize;
+        int tx1 = Math.min(width, tx0 + tileSize);
+        int ty1 = Math.min(image.getHeight(), ty0 + tileSize);
+        int[] dst = pixels;
+
+        int[] bin = bins[t];
+        for (int b = 0; b < binSizes[t]; b++) {
+            int i = bin[b];
+            int a = i * 4;
+            Source source = sources[i];
+            int x0 = Math.max(tx0, area[a]);
+            int y0 = Math.max(ty0, area[a + 1]);
+            int x1 = Math.min(tx1, area[a + 2]);
+            int y1 = Math.min(ty1, area[a + 3]);
+            int sx = origins[i * 2] + x0 - area[a];
+            int sy = origins[i * 2 + 1] + y0 - area[a + 1];
+            int[] src = source.data;
+            int n = x1 - x0;
+
+            for (int y = y0; y < y1; y++) {
+                int d = y * width + x0;
+                int s = source.base + (sy + y - y0) * source.stride + sx;
+                switch (source.mode) {
+                    case OPAQUE:
+                        for (int x = 0; x < n; x++) {
+                            dst[d + x] = src[s + x] | 0xFF000000;
+                        }
+                        break;
+                    case STRAIGHT:
+                        for (int x = 0; x < n; x++) {
+                            int p = src[s + x];
+                            int alpha = p >>> 24;
+                            if (alpha == 255) {
+                                dst[d + x] = p;
+                            } else if (alpha != 0) {
+                                dst[d + x] = blend(premultiply(p), dst[d + x]);
+                            }
+                        }
+                        break;
+                    default:
+                        for (int x = 0; x < n; x++) {
+                            int p = src[s + x];
+                            int alpha = p >>> 24;
+                            if (alpha == 255) {
+                                dst[d + x] = p;
+                            } else if (alpha != 0) {
+                                dst[d + x] = blend(p, dst[d + x]);
+                            }
+                        }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a premultiplied pixel over another
+     *
+     * @param src the premultiplied pixel being drawn
+     * @param dst the premultiplied pixel underneath
+     * @return the blended pixel
+     */
+    private static int blend(int src, int dst) {
+        int inv = 255 - (src >>> 24);
+        int rb = (dst & 0x00FF00FF) * inv + 0x00800080;
+        rb = ((rb + ((rb >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+        int ag = ((dst >>> 8) & 0x00FF00FF) * inv + 0x00800080;
+        ag = (ag + ((ag >>> 8) & 0x00FF00FF)) & 0xFF00FF00;
+        return src + (rb | ag);
+    }
+
+    /**
+     * Converts a straight alpha pixel to premultiplied alpha
+     *
+     * @param argb the straight alpha pixel
+     * @return the premultiplied pixel
+     */
+    private static int premultiply(int argb) {
+        int alpha = argb >>> 24;
+        if (alpha == 255) {
+            return argb;
+        }
+        int rb = (argb & 0x00FF00FF) * alpha + 0x00800080;
+        rb = ((rb + ((rb >>> 8) & 0x00FF00FF)) >>> 8) & 0x00FF00FF;
+        int g = (argb & 0x0000FF00) * alpha + 0x00008000;
+        g = ((g + ((g >>> 8) & 0x0000FF00)) >>> 8) & 0x0000FF00;
+        return (alpha << 24) | rb | g;
+    }
+
+    /**
+     * @return The tile edge length in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return The number of tiles in the last frame
+     */
+    public int getTileCount() {
+        return bins.length;
+    }
+
+    /**
+     * @return The number of tiles in the last frame which had to be drawn
+     * through Java2D
+     */
+    public int getFallbackTiles() {
+        return fallbackTiles;
+    }
+
+    /**
+     * @return The time in nanoseconds the last frame took to rasterize
+     */
+    public long getLastRasterTime() {
+        return lastRasterNanos;
+    }
+
+    /**
+     * Forgets every converted source image
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * The int pixels of a source image and how to read them
+     */
+    private static class Source {
+
+        private final int[] data;
+        private final int base;
+        private final int stride;
+        private final int mode;
+
+        private Source(BufferedImage image, int mode) {
+            WritableRaster raster = image.getRaster();
+            this.data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            this.stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+            // INDEX OF PIXEL 0,0, ALLOWING FOR SUBIMAGES SHARING A LARGER RASTER
+            this.base = raster.getDataBuffer().getOffset()
+                    - raster.getSampleModelTranslateY() * stride - raster.getSampleModelTranslateX();
+            this.mode = mode;
+        }
+    }
+
+    /**
+     * Rasterizes a range of tiles, splitting it in half until each task has
+     * only a few tiles left
+     */
+    private class TileTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int clear;
+
+        private TileTask(int from, int to, int clear) {
+            this.from = from;
+            this.to = to;
+            this.clear = clear;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 2) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileTask(from, mid, clear), new TileTask(mid, to, clear));
+                return;
+            }
+            for (int t = from; t < to; t++) {
+                if (!fallback[t]) {
+                    rasterizeTile(t, clear);
+                }
+            }
+        }
+    }
+}
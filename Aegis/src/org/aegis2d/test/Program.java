@@ -29,7 +29,6 @@ import java.io.File;
 import java.io.IOException;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
-import org.aegis.game.AegisGame;
 import org.aegis.game.GameScene;
 import org.aegis2d.Aegis2DGame;
 
@@ -41,15 +40,15 @@ import org.aegis2d.Aegis2DGame;
 public class Program {
 
     public static void main(String[] args) {
-        AegisGame game = new Aegis2DGame("My Game", 1024, 768, 60.0f);
+        Aegis2DGame game = new Aegis2DGame("My Game", 1024, 768, 60.0f);
 
         GameScene debugScene = new TestScene(game, "DEBUG");
         game.getScenes().addScene(debugScene);
-        game.getGraphics().setBackground(Color.white, null);
+        game.get2DGraphics().setBackground(Color.white, null);
 
         try {
             BufferedImage icon = ImageIO.read(new File(".\\img\\icon.png"));
-            game.getGraphics().getWindow().setIconImage(icon);
+            game.get2DGraphics().getWindow().setIconImage(icon);
         } catch (IOException ex) {
 
         }
@@ -25,7 +25,7 @@ package org.aegis2d.test;
 
 import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
+import org.aegis.data.GameResourceManager;
 import org.aegis.game.AegisGame;
 import org.aegis.math.*;
 import org.aegis2d.AnimatedGraphic;
@@ -50,18 +50,20 @@ public class TestScene extends org.aegis.game.AsyncGameScene {
     @Override
     public void onSceneEnter() {
         super.onSceneEnter();
+        addAnimation(item);
 
         try {
+            GameResourceManager resources = game.getResources();
             AnimatedGraphic ag = new AnimatedGraphic();
-            ag.loadFromSpritesheet(ImageIO.read(new File(".\\img\\BlueTimerSheet.png")), 64, 64, 1, 2, 0);
+            ag.loadFromSpritesheet(resources.loadImage(new File(".\\img\\BlueTimerSheet.png")), 64, 64, 1, 2, 0);
             item.addState(ag);
 
             ag = new AnimatedGraphic();
-            ag.loadFromSpritesheet(ImageIO.read(new File(".\\img\\GreenTimerSheet.png")), 64, 64, 1, 2, 5);
+            ag.loadFromSpritesheet(resources.loadImage(new File(".\\img\\GreenTimerSheet.png")), 64, 64, 1, 2, 5);
             item.addState(ag);
 
             ag = new AnimatedGraphic();
-            ag.loadFromSpritesheet(ImageIO.read(new File(".\\img\\RedTimerSheet.png")), 64, 64, 1, 2, 10);
+            ag.loadFromSpritesheet(resources.loadImage(new File(".\\img\\RedTimerSheet.png")), 64, 64, 1, 2, 10);
             item.addState(ag);
         } catch (IOException ex) {
             ex.printStackTrace();